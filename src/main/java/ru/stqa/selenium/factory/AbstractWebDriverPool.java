@@ -20,23 +20,537 @@ import org.openqa.selenium.Capabilities;
 import org.openqa.selenium.WebDriver;
 
 import java.net.URL;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public abstract class AbstractWebDriverPool implements WebDriverPool {
 
-  DriverAlivenessChecker alivenessChecker = new DefaultDriverAlivenessChecker();
+  private static final Executor DEFAULT_CREATION_EXECUTOR =
+    Executors.newCachedThreadPool(new DaemonThreadFactory("driver-creator"));
+  private static final Executor DEFAULT_DISMISSAL_EXECUTOR =
+    Executors.newCachedThreadPool(new DaemonThreadFactory("driver-quitter"));
+  private static final Executor HEALTH_CHECK_EXECUTOR =
+    Executors.newCachedThreadPool(new DaemonThreadFactory("driver-checker"));
+  private static final ExecutorService LAUNCH_EXECUTOR =
+    Executors.newCachedThreadPool(new DaemonThreadFactory("driver-launcher"));
+  static final Duration ALIVENESS_CHECK_TIMEOUT = Duration.ofSeconds(30);
+  private static final ScheduledExecutorService HEALTH_CHECK_SCHEDULER =
+    Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("driver-health-check"));
+
+  private DriverAlivenessChecker alivenessChecker = new DefaultDriverAlivenessChecker();
   private LocalDriverProvider localDriverProvider = new DefaultLocalDriverProvider();
   private RemoteDriverProvider remoteDriverProvider = new RemoteDriverProvider() {};
+  private Executor creationExecutor = DEFAULT_CREATION_EXECUTOR;
+  private volatile Executor quitExecutor;
+  private volatile Duration dismissalTimeout = Duration.ofMinutes(1);
+  private volatile DriverKiller driverKiller;
+  private volatile PoolMetrics metrics = PoolMetrics.NONE;
+  private volatile DriverResetter driverResetter;
+  private volatile Duration creationTimeout;
+  private volatile RetryPolicy retryPolicy = RetryPolicy.NONE;
+  private volatile LaunchThrottle launchThrottle;
+  private volatile CapabilitiesCanonicalizer canonicalizer = new CapabilitiesCanonicalizer();
+
+  private final Map<DriverKey, RecyclingPolicy> recyclingPolicies = new ConcurrentHashMap<>();
+  private volatile RecyclingPolicy defaultRecyclingPolicy = RecyclingPolicy.NEVER;
+  private final Map<DriverIdentity, ManagedDriver> usages = new ConcurrentHashMap<>();
+  private ScheduledFuture<?> healthCheck;
+
+  private final Set<CompletableFuture<Void>> pendingQuits = ConcurrentHashMap.newKeySet();
+
+  protected DriverKey createKey(Capabilities capabilities, URL hub) {
+    return DriverKey.of(canonicalize(capabilities), hub);
+  }
+
+  private Capabilities canonicalize(Capabilities capabilities) {
+    CapabilitiesCanonicalizer current = canonicalizer;
+    return current == null ? capabilities : current.canonicalize(capabilities);
+  }
+
+  /**
+   * Creates a driver according to the creation timeout and the retry policy.
+   * If several attempts fail, the error of the last one is thrown, with the earlier ones as suppressed.
+   */
+  protected WebDriver newDriver(DriverKey key, URL hub, Capabilities capabilities) {
+    RetryPolicy retry = retryPolicy;
+    List<RuntimeException> failures = new ArrayList<>();
+    for (int attempt = 1; ; attempt++) {
+      long start = System.nanoTime();
+      try {
+        WebDriver driver = launch(hub, canonicalize(capabilities), creationTimeout);
+        metrics.driverCreated(key, since(start));
+        return driver;
+      } catch (RuntimeException e) {
+        metrics.driverCreationFailed(key, since(start));
+        if (attempt >= retry.getMaxAttempts()) {
+          if (failures.isEmpty()) {
+            throw e;
+          }
+          DriverCreationError error = new DriverCreationError(
+            String.format("Can't create a driver in %d attempts", attempt), e);
+          failures.forEach(error::addSuppressed);
+          throw error;
+        }
+        failures.add(e);
+      } catch (Error e) {
+        metrics.driverCreationFailed(key, since(start));
+        throw e;
+      }
+      try {
+        Thread.sleep(retry.backoff(attempt).toMillis());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new DriverCreationError(e);
+      }
+    }
+  }
 
-  protected String createKey(Capabilities capabilities, URL hub) {
-    return capabilities.toString() + (hub == null ? "" : ":" + hub.toString());
+  private WebDriver launch(URL hub, Capabilities capabilities, Duration timeout) {
+    // the wait for a permit is not a part of the creation timeout, a queued launch is not stuck
+    LaunchThrottle.Permit permit = acquirePermit(capabilities);
+    if (timeout == null) {
+      return launchWithPermit(hub, capabilities, permit);
+    }
+    AtomicBoolean started = new AtomicBoolean();
+    CompletableFuture<WebDriver> result = new CompletableFuture<>();
+    Future<?> task = LAUNCH_EXECUTOR.submit(() -> {
+      if (!started.compareAndSet(false, true)) {
+        // abandoned before it started
+        return;
+      }
+      try {
+        result.complete(launchWithPermit(hub, capabilities, permit));
+      } catch (Throwable e) {
+        result.completeExceptionally(e);
+      }
+    });
+    try {
+      return result.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new DriverCreationError(cause);
+    } catch (TimeoutException e) {
+      abandon(task, started, permit, result);
+      throw new DriverCreationError("The driver was not created in " + timeout, e);
+    } catch (InterruptedException e) {
+      abandon(task, started, permit, result);
+      Thread.currentThread().interrupt();
+      throw new DriverCreationError(e);
+    }
   }
 
-  protected WebDriver newDriver(URL hub, Capabilities capabilities) {
+  /**
+   * Interrupts a stuck attempt, and quits the driver if the attempt succeeds anyway.
+   * The driver has never been in the pool, so it is quit bypassing the pool metrics.
+   * The permit is released right away, a provider that ignores the interruption should not hold it forever.
+   */
+  private void abandon(Future<?> task, AtomicBoolean started, LaunchThrottle.Permit permit,
+                       CompletableFuture<WebDriver> result) {
+    if (permit != null) {
+      permit.release(0, false);
+    }
+    if (started.compareAndSet(false, true)) {
+      return;
+    }
+    result.thenAccept(WebDriver::quit);
+    task.cancel(true);
+  }
+
+  private LaunchThrottle.Permit acquirePermit(Capabilities capabilities) {
+    LaunchThrottle throttle = launchThrottle;
+    if (throttle == null) {
+      return null;
+    }
+    try {
+      return throttle.acquire(capabilities.getBrowserName());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new DriverCreationError(e);
+    }
+  }
+
+  private WebDriver launchWithPermit(URL hub, Capabilities capabilities, LaunchThrottle.Permit permit) {
+    if (permit == null) {
+      return provide(hub, capabilities);
+    }
+    long start = System.nanoTime();
+    boolean succeeded = false;
+    try {
+      WebDriver driver = provide(hub, capabilities);
+      succeeded = true;
+      return driver;
+    } finally {
+      permit.release(System.nanoTime() - start, succeeded);
+    }
+  }
+
+  private WebDriver provide(URL hub, Capabilities capabilities) {
     return (hub == null)
         ? localDriverProvider.createDriver(capabilities)
         : remoteDriverProvider.createDriver(hub, capabilities);
   }
 
+  protected boolean isAlive(WebDriver driver) {
+    long start = System.nanoTime();
+    try {
+      return alivenessChecker.isAlive(driver);
+    } finally {
+      metrics.alivenessChecked(since(start));
+    }
+  }
+
+  /**
+   * Launches a driver in the pool's creation executor.
+   */
+  protected CompletableFuture<WebDriver> newDriverAsync(DriverKey key, URL hub, Capabilities capabilities) {
+    return CompletableFuture.supplyAsync(() -> newDriver(key, hub, capabilities), creationExecutor);
+  }
+
+  /**
+   * Starts counting uses and age of a driver, for the pools that recycle drivers.
+   */
+  protected void trackUsage(WebDriver driver) {
+    ManagedDriver managed = new ManagedDriver(driver, null, null);
+    usages.put(managed.getIdentity(), managed);
+  }
+
+  /**
+   * Counts a reuse of a tracked driver, the first hand-out of a driver is not a reuse.
+   */
+  protected void countReuse(WebDriver driver) {
+    ManagedDriver managed = usages.get(new DriverIdentity(driver));
+    if (managed != null) {
+      managed.use();
+    }
+  }
+
+  /**
+   * Checks if a tracked driver should be retired according to the recycling policy,
+   * the reuses are counted by {@link #countReuse(WebDriver)}.
+   */
+  protected boolean shouldRetire(DriverKey key, WebDriver driver) {
+    ManagedDriver managed = usages.get(new DriverIdentity(driver));
+    return managed != null && shouldRetire(key, managed, managed.getUses());
+  }
+
+  /**
+   * Counts a reuse of the driver and checks if it should be retired, for the pools that keep the handles
+   * of their drivers, such drivers are not tracked with {@link #trackUsage(WebDriver)}.
+   */
+  boolean shouldRetire(ManagedDriver managed) {
+    return shouldRetire(managed.getKey(), managed, managed.use());
+  }
+
+  private boolean shouldRetire(DriverKey key, ManagedDriver managed, int uses) {
+    RecyclingPolicy policy = recyclingPolicies.getOrDefault(key, defaultRecyclingPolicy);
+    if (policy == RecyclingPolicy.NEVER) {
+      return false;
+    }
+    if (policy.shouldRetire(managed.getDriver(), uses, since(managed.getCreatedNanos()))) {
+      metrics.driverRetired(key);
+      return true;
+    }
+    return false;
+  }
+
+  private void quitNow(WebDriver driver) {
+    usages.remove(new DriverIdentity(driver));
+    long start = System.nanoTime();
+    boolean succeeded = false;
+    try {
+      driver.quit();
+      succeeded = true;
+    } finally {
+      metrics.driverQuit(since(start), succeeded);
+    }
+  }
+
+  /**
+   * Drops a dead driver without an attempt to quit it, the pool does not track it anymore.
+   */
+  protected void discard(WebDriver driver) {
+    usages.remove(new DriverIdentity(driver));
+    metrics.driverDiscarded();
+  }
+
+  /**
+   * Cleans up a driver to be handed to another client, if a resetter is set.
+   * @return false if the driver could not be reset and should not be reused
+   */
+  protected boolean reset(WebDriver driver) {
+    return reset(driver, null);
+  }
+
+  /**
+   * The same as {@link #reset(WebDriver)}, but the given resetter is used if none is set.
+   */
+  protected boolean reset(WebDriver driver, DriverResetter defaultResetter) {
+    DriverResetter resetter = driverResetter != null ? driverResetter : defaultResetter;
+    if (resetter == null) {
+      return true;
+    }
+    try {
+      resetter.reset(driver);
+      return true;
+    } catch (RuntimeException e) {
+      return false;
+    }
+  }
+
+  private static Duration since(long start) {
+    return Duration.ofNanos(System.nanoTime() - start);
+  }
+
+  /**
+   * Quits a driver that is already removed from the pool bookkeeping,
+   * either immediately or in background if a quit executor is set.
+   */
+  protected void quit(WebDriver driver) {
+    Executor executor = quitExecutor;
+    if (executor == null) {
+      quitNow(driver);
+      return;
+    }
+    CompletableFuture<Void> pending = CompletableFuture.runAsync(() -> quitNow(driver), executor);
+    pendingQuits.add(pending);
+    pending.whenComplete((result, error) -> pendingQuits.remove(pending));
+  }
+
+  /**
+   * Quits drivers that are already removed from the pool bookkeeping in parallel, and waits for them
+   * no longer than the dismissal timeout. The drivers that did not quit in time are killed, if a killer is set.
+   * @throws DriverDismissalError if some drivers failed to quit or did not quit in time
+   */
+  protected void quitAll(Collection<WebDriver> drivers) {
+    if (drivers.isEmpty()) {
+      return;
+    }
+    Executor executor = quitExecutor != null ? quitExecutor : DEFAULT_DISMISSAL_EXECUTOR;
+    Map<WebDriver, CompletableFuture<Void>> quits = new IdentityHashMap<>();
+    for (WebDriver driver : drivers) {
+      CompletableFuture<Void> pending = CompletableFuture.runAsync(() -> quitNow(driver), executor);
+      pendingQuits.add(pending);
+      pending.whenComplete((result, error) -> pendingQuits.remove(pending));
+      quits.put(driver, pending);
+    }
+
+    Duration timeout = dismissalTimeout;
+    try {
+      CompletableFuture.allOf(quits.values().toArray(new CompletableFuture[0]))
+        .get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException | TimeoutException e) {
+      // the failures are collected one by one below
+    }
+
+    Map<WebDriver, Throwable> failures = new IdentityHashMap<>();
+    for (Map.Entry<WebDriver, CompletableFuture<Void>> quit : quits.entrySet()) {
+      WebDriver driver = quit.getKey();
+      try {
+        quit.getValue().getNow(null);
+      } catch (CompletionException e) {
+        failures.put(driver, e.getCause());
+      } catch (CancellationException e) {
+        failures.put(driver, e);
+      }
+      if (!quit.getValue().isDone()) {
+        failures.put(driver, new TimeoutException("The driver did not quit in " + timeout));
+        kill(driver);
+      }
+    }
+    if (!failures.isEmpty()) {
+      throw new DriverDismissalError(failures);
+    }
+  }
+
+  private void kill(WebDriver driver) {
+    DriverKiller killer = driverKiller;
+    if (killer != null) {
+      try {
+        killer.kill(driver);
+      } catch (RuntimeException e) {
+        // the driver is reported as failed to quit anyway
+      }
+    }
+  }
+
+  /**
+   * Evicts and quits the dead idle drivers, it is called periodically if the health check is on.
+   * The drivers in use are not checked, a test may be using a driver at the moment, they are checked on reuse.
+   * Pools that have no idle drivers do nothing by default.
+   */
+  protected void checkHealth() {
+  }
+
+  /**
+   * Checks the drivers in parallel. A driver that does not respond in {@link #ALIVENESS_CHECK_TIMEOUT}
+   * is considered dead, so that a hung browser does not stop the health checks of all the pools.
+   * @return the drivers that are not alive
+   */
+  protected List<WebDriver> findDead(Collection<WebDriver> drivers) {
+    Map<WebDriver, CompletableFuture<Boolean>> checks = new IdentityHashMap<>();
+    for (WebDriver driver : drivers) {
+      checks.put(driver, CompletableFuture.supplyAsync(() -> isAlive(driver), HEALTH_CHECK_EXECUTOR));
+    }
+    long deadline = System.nanoTime() + ALIVENESS_CHECK_TIMEOUT.toNanos();
+    List<WebDriver> dead = new ArrayList<>();
+    for (Map.Entry<WebDriver, CompletableFuture<Boolean>> check : checks.entrySet()) {
+      boolean alive;
+      try {
+        alive = check.getValue().get(Math.max(deadline - System.nanoTime(), 0), TimeUnit.NANOSECONDS);
+      } catch (ExecutionException | TimeoutException e) {
+        alive = false;
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return dead;
+      }
+      if (!alive) {
+        dead.add(check.getKey());
+      }
+    }
+    return dead;
+  }
+
+  private void checkHealthSafely() {
+    try {
+      checkHealth();
+    } catch (RuntimeException e) {
+      // the next check will try again, the scheduled task must not die
+    }
+  }
+
+  @Override
+  public boolean awaitTermination(Duration timeout) throws InterruptedException {
+    CompletableFuture<Void> all = CompletableFuture.allOf(pendingQuits.toArray(new CompletableFuture[0]));
+    try {
+      all.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+      return true;
+    } catch (ExecutionException e) {
+      // some driver failed to quit, but all the attempts are over, and the drivers are out of the pool anyway
+      return true;
+    } catch (TimeoutException e) {
+      return false;
+    }
+  }
+
+  /**
+   * The last resort to quit the drivers, it is called from the shutdown hook.
+   * JVM shutdown is delayed no longer than about twice the dismissal timeout.
+   */
+  void dismissAllOnShutdown() {
+    try {
+      dismissAll();
+    } catch (DriverDismissalError e) {
+      System.err.println(e.getMessage());
+    } finally {
+      try {
+        // drivers dismissed in background before the shutdown
+        awaitTermination(dismissalTimeout);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  @Override
+  public CompletableFuture<WebDriver> getDriverAsync(URL hub, Capabilities capabilities) {
+    return getDriverAsync(hub, capabilities, creationExecutor);
+  }
+
+  public void setCreationExecutor(Executor creationExecutor) {
+    this.creationExecutor = creationExecutor;
+  }
+
+  public void setQuitExecutor(Executor quitExecutor) {
+    this.quitExecutor = quitExecutor;
+  }
+
+  public void setDismissalTimeout(Duration dismissalTimeout) {
+    this.dismissalTimeout = dismissalTimeout;
+  }
+
+  public void setDriverKiller(DriverKiller driverKiller) {
+    this.driverKiller = driverKiller;
+  }
+
+  public synchronized void setHealthCheckInterval(Duration interval) {
+    if (healthCheck != null) {
+      healthCheck.cancel(false);
+      healthCheck = null;
+    }
+    if (interval != null) {
+      long millis = interval.toMillis();
+      healthCheck = HEALTH_CHECK_SCHEDULER.scheduleWithFixedDelay(
+        this::checkHealthSafely, millis, millis, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  public void setCreationTimeout(Duration creationTimeout) {
+    this.creationTimeout = creationTimeout;
+  }
+
+  public void setRetryPolicy(RetryPolicy retryPolicy) {
+    this.retryPolicy = retryPolicy;
+  }
+
+  public void setLaunchThrottle(LaunchThrottle launchThrottle) {
+    this.launchThrottle = launchThrottle;
+  }
+
+  public void setDriverResetter(DriverResetter driverResetter) {
+    this.driverResetter = driverResetter;
+  }
+
+  public void setRecyclingPolicy(RecyclingPolicy policy) {
+    this.defaultRecyclingPolicy = policy;
+  }
+
+  public void setRecyclingPolicy(Capabilities capabilities, RecyclingPolicy policy) {
+    setRecyclingPolicy(null, capabilities, policy);
+  }
+
+  public void setRecyclingPolicy(URL hub, Capabilities capabilities, RecyclingPolicy policy) {
+    recyclingPolicies.put(createKey(capabilities, hub), policy);
+  }
+
+  public void setPoolMetrics(PoolMetrics metrics) {
+    this.metrics = metrics;
+  }
+
+  protected PoolMetrics getMetrics() {
+    return metrics;
+  }
+
+  public void setCapabilitiesCanonicalizer(CapabilitiesCanonicalizer canonicalizer) {
+    this.canonicalizer = canonicalizer;
+  }
+
   public void setDriverAlivenessChecker(DriverAlivenessChecker alivenessChecker) {
     this.alivenessChecker = alivenessChecker;
   }
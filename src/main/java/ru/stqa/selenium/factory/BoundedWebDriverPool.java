@@ -0,0 +1,392 @@
+/*
+ * Copyright 2020 Alexei Barantsev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ru.stqa.selenium.factory;
+
+import org.openqa.selenium.Capabilities;
+import org.openqa.selenium.ImmutableCapabilities;
+import org.openqa.selenium.WebDriver;
+
+import java.net.URL;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A pool with a limited number of live drivers, in total and for each set of capabilities.
+ * A driver is borrowed from the pool and released back to the pool, to be reused by any thread later.
+ *
+ * If the limit is reached a request waits for a driver to be released or dismissed. The requests are served
+ * in the order of arrival, a request can only overtake the earlier ones that wait for the per-key limit.
+ * If the total limit is reached, but there are idle drivers with different capabilities, the least recently
+ * released of them is quit to make room for a new driver.
+ *
+ * {@link #getDriver(URL, Capabilities)} is {@link #borrow(URL, Capabilities, Duration)} with the default timeout,
+ * and a driver obtained this way should be released or dismissed too.
+ */
+public final class BoundedWebDriverPool extends AbstractWebDriverPool {
+
+  private final int maxTotal;
+  private final int maxPerKey;
+  private volatile Duration borrowTimeout = Duration.ofMinutes(5);
+
+  // guarded by this
+  private final Map<DriverKey, Deque<WebDriver>> idle = new HashMap<>();
+  private final Deque<WebDriver> idleOrder = new ArrayDeque<>();
+  private final Map<WebDriver, DriverKey> idleKeys = new IdentityHashMap<>();
+  private final Map<WebDriver, DriverKey> borrowed = new IdentityHashMap<>();
+  private final Map<DriverKey, Integer> live = new HashMap<>(); // idle, borrowed and being launched
+  private final Map<DriverKey, Origin> origins = new HashMap<>();
+  private int total;
+  private final Deque<Waiter> waiters = new ArrayDeque<>();
+
+  public BoundedWebDriverPool(int maxTotal) {
+    this(maxTotal, maxTotal);
+  }
+
+  /**
+   * @param maxTotal The maximum number of live drivers
+   * @param maxPerKey The maximum number of live drivers with the same capabilities
+   */
+  public BoundedWebDriverPool(int maxTotal, int maxPerKey) {
+    if (maxTotal < 1 || maxPerKey < 1 || maxPerKey > maxTotal) {
+      throw new IllegalArgumentException(
+        String.format("Inconsistent limits: maxTotal=%d, maxPerKey=%d", maxTotal, maxPerKey));
+    }
+    this.maxTotal = maxTotal;
+    this.maxPerKey = maxPerKey;
+    Runtime.getRuntime().addShutdownHook(new Thread(BoundedWebDriverPool.this::dismissAllOnShutdown));
+  }
+
+  /**
+   * Sets the time {@link #getDriver(URL, Capabilities)} waits for a driver, five minutes by default.
+   */
+  public void setBorrowTimeout(Duration borrowTimeout) {
+    this.borrowTimeout = borrowTimeout;
+  }
+
+  /**
+   * Borrows a local driver, see {@link #borrow(URL, Capabilities, Duration)}.
+   */
+  public WebDriver borrow(Capabilities capabilities, Duration timeout) throws InterruptedException, TimeoutException {
+    return borrow(null, capabilities, timeout);
+  }
+
+  /**
+   * Hands out an idle driver with the given capabilities, or launches a new one if the limits allow,
+   * or waits for a driver to be released or dismissed.
+   * @param hub The Selenium Server Hub address
+   * @param capabilities The desired driver capabilities
+   * @param timeout The maximum time to wait for the limits to allow a driver
+   * @throws TimeoutException if the limits did not allow a driver in time
+   */
+  public WebDriver borrow(URL hub, Capabilities capabilities, Duration timeout)
+      throws InterruptedException, TimeoutException {
+    DriverKey key = createKey(capabilities, hub);
+    long deadline = System.nanoTime() + timeout.toNanos();
+    while (true) {
+      WebDriver driver;
+      WebDriver evicted = null;
+      synchronized (this) {
+        awaitTurn(key, deadline);
+        driver = pollIdle(key);
+        if (driver != null) {
+          borrowed.put(driver, key);
+        } else {
+          if (total >= maxTotal) {
+            evicted = evictIdle();
+          }
+          live.merge(key, 1, Integer::sum);
+          total++;
+          origins.computeIfAbsent(key, k -> new Origin(hub, capabilities));
+        }
+      }
+      if (evicted != null) {
+        quit(evicted);
+      }
+
+      if (driver == null) {
+        return launch(key, hub, capabilities);
+      }
+      if (isAlive(driver)) {
+        getMetrics().driverReused(key);
+        countReuse(driver);
+        return driver;
+      }
+      getMetrics().driverRecreatedAsDead(key);
+      boolean owned;
+      synchronized (this) {
+        // the driver could be dismissed while it was checked
+        owned = borrowed.remove(driver) != null;
+        if (owned) {
+          freeSlot(key);
+        }
+      }
+      if (owned) {
+        quit(driver);
+      }
+    }
+  }
+
+  private WebDriver launch(DriverKey key, URL hub, Capabilities capabilities) {
+    WebDriver driver;
+    try {
+      driver = newDriver(key, hub, capabilities);
+    } catch (RuntimeException | Error e) {
+      synchronized (this) {
+        freeSlot(key);
+      }
+      throw e;
+    }
+    trackUsage(driver);
+    synchronized (this) {
+      borrowed.put(driver, key);
+    }
+    return driver;
+  }
+
+  /**
+   * Launches a fresh driver in place of a retired one, the slot of the retired driver is kept for it.
+   */
+  private void replaceInBackground(DriverKey key, Origin origin) {
+    newDriverAsync(key, origin.hub, origin.capabilities).whenComplete((driver, error) -> {
+      synchronized (this) {
+        if (error != null) {
+          freeSlot(key);
+          return;
+        }
+        trackUsage(driver);
+        addIdle(key, driver);
+      }
+    });
+  }
+
+  /**
+   * Returns a borrowed driver to the pool, to be handed out to the next request with the same capabilities.
+   * The driver is reset first, if a resetter is set, and it is dismissed if it could not be reset.
+   * If the driver is to be retired according to the {@link RecyclingPolicy}, it is quit,
+   * and a fresh one is launched in background in its place.
+   * Throws an Error on attempt to release an unmanaged or not borrowed instance of WebDriver.
+   * @param driver The driver that is not in use anymore
+   */
+  public void release(WebDriver driver) {
+    DriverKey key;
+    synchronized (this) {
+      key = borrowed.get(driver);
+      if (key == null) {
+        throw new Error("The driver is not borrowed from the factory: " + driver);
+      }
+    }
+    boolean retired = shouldRetire(key, driver);
+    boolean reusable = !retired && reset(driver);
+    Origin origin = null;
+    synchronized (this) {
+      // the driver could be dismissed while it was reset
+      if (borrowed.remove(driver) == null) {
+        return;
+      }
+      if (reusable) {
+        addIdle(key, driver);
+        return;
+      }
+      if (retired) {
+        origin = origins.get(key);
+      } else {
+        freeSlot(key);
+      }
+    }
+    if (origin != null) {
+      replaceInBackground(key, origin);
+    }
+    quit(driver);
+  }
+
+  private void addIdle(DriverKey key, WebDriver driver) {
+    idle.computeIfAbsent(key, k -> new ArrayDeque<>()).addLast(driver);
+    idleOrder.addLast(driver);
+    idleKeys.put(driver, key);
+    notifyAll();
+  }
+
+  @Override
+  public WebDriver getDriver(URL hub, Capabilities capabilities) {
+    try {
+      return borrow(hub, capabilities, borrowTimeout);
+    } catch (TimeoutException e) {
+      throw new DriverCreationError("No driver is available in " + borrowTimeout, e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new DriverCreationError(e);
+    }
+  }
+
+  @Override
+  public void dismissDriver(WebDriver driver) {
+    synchronized (this) {
+      DriverKey key = borrowed.remove(driver);
+      if (key == null) {
+        key = removeIdle(driver);
+      }
+      if (key == null) {
+        throw new Error("The driver is not owned by the factory: " + driver);
+      }
+      freeSlot(key);
+    }
+    quit(driver);
+  }
+
+  @Override
+  public void dismissAll() {
+    List<WebDriver> drivers;
+    synchronized (this) {
+      drivers = new ArrayList<>(borrowed.keySet());
+      drivers.addAll(idleOrder);
+      for (DriverKey key : borrowed.values()) {
+        freeSlot(key);
+      }
+      for (DriverKey key : idleKeys.values()) {
+        freeSlot(key);
+      }
+      borrowed.clear();
+      idle.clear();
+      idleOrder.clear();
+      idleKeys.clear();
+    }
+    quitAll(drivers);
+  }
+
+  @Override
+  public synchronized boolean isEmpty() {
+    return total == 0;
+  }
+
+  @Override
+  protected void checkHealth() {
+    List<WebDriver> candidates;
+    synchronized (this) {
+      candidates = new ArrayList<>(idleOrder);
+    }
+    for (WebDriver driver : findDead(candidates)) {
+      DriverKey key;
+      synchronized (this) {
+        // the driver could be handed out while it was checked
+        key = removeIdle(driver);
+        if (key != null) {
+          freeSlot(key);
+        }
+      }
+      if (key != null) {
+        getMetrics().driverRecreatedAsDead(key);
+        quit(driver);
+      }
+    }
+  }
+
+  private void awaitTurn(DriverKey key, long deadline) throws InterruptedException, TimeoutException {
+    Waiter waiter = new Waiter(key);
+    waiters.addLast(waiter);
+    try {
+      while (!isTurnOf(waiter)) {
+        long remaining = deadline - System.nanoTime();
+        if (remaining <= 0) {
+          throw new TimeoutException("No driver is available for " + key);
+        }
+        TimeUnit.NANOSECONDS.timedWait(this, remaining);
+      }
+    } finally {
+      waiters.remove(waiter);
+      // a later request could be waiting behind this one
+      notifyAll();
+    }
+  }
+
+  /**
+   * A request can be served if the limits allow, and there is no earlier request that can be served.
+   */
+  private boolean isTurnOf(Waiter waiter) {
+    for (Waiter earlier : waiters) {
+      if (canServe(earlier.key)) {
+        return earlier == waiter;
+      }
+    }
+    return false;
+  }
+
+  private boolean canServe(DriverKey key) {
+    Deque<WebDriver> idleForKey = idle.get(key);
+    if (idleForKey != null && !idleForKey.isEmpty()) {
+      return true;
+    }
+    return live.getOrDefault(key, 0) < maxPerKey && (total < maxTotal || !idleOrder.isEmpty());
+  }
+
+  private WebDriver pollIdle(DriverKey key) {
+    Deque<WebDriver> idleForKey = idle.get(key);
+    WebDriver driver = idleForKey == null ? null : idleForKey.pollFirst();
+    if (driver != null) {
+      DriverIdentity.remove(idleOrder, driver);
+      idleKeys.remove(driver);
+    }
+    return driver;
+  }
+
+  private WebDriver evictIdle() {
+    WebDriver driver = idleOrder.peekFirst();
+    freeSlot(removeIdle(driver));
+    return driver;
+  }
+
+  private DriverKey removeIdle(WebDriver driver) {
+    DriverKey key = idleKeys.remove(driver);
+    if (key != null) {
+      DriverIdentity.remove(idle.get(key), driver);
+      DriverIdentity.remove(idleOrder, driver);
+    }
+    return key;
+  }
+
+  private void freeSlot(DriverKey key) {
+    live.computeIfPresent(key, (k, count) -> count > 1 ? count - 1 : null);
+    total--;
+    notifyAll();
+  }
+
+  private static final class Waiter {
+    private final DriverKey key;
+
+    Waiter(DriverKey key) {
+      this.key = key;
+    }
+  }
+
+  private static final class Origin {
+    private final URL hub;
+    private final Capabilities capabilities;
+
+    Origin(URL hub, Capabilities capabilities) {
+      this.hub = hub;
+      // the requested capabilities can be modified by the client later
+      this.capabilities = ImmutableCapabilities.copyOf(capabilities);
+    }
+  }
+}
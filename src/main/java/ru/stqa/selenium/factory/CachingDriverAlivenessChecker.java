@@ -0,0 +1,76 @@
+/*
+ * Copyright 2020 Alexei Barantsev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ru.stqa.selenium.factory;
+
+import com.google.common.collect.MapMaker;
+import org.openqa.selenium.WebDriver;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Trusts a driver to be alive for a while after its last successful check, so that back-to-back requests
+ * for a driver do not make a round-trip to the browser each time. The actual check is done by the delegate.
+ *
+ * A client can also report successful commands with {@link #markAlive(WebDriver)}, for example from
+ * an event listener, to postpone the next actual check.
+ */
+public class CachingDriverAlivenessChecker implements DriverAlivenessChecker {
+
+  private final DriverAlivenessChecker delegate;
+  private final long stalenessNanos;
+
+  // weak keys, so that dismissed drivers do not stay here forever, they are compared by identity
+  private final Map<WebDriver, Long> lastSeenAlive = new MapMaker().weakKeys().makeMap();
+
+  public CachingDriverAlivenessChecker(Duration staleness) {
+    this(new DefaultDriverAlivenessChecker(), staleness);
+  }
+
+  public CachingDriverAlivenessChecker(DriverAlivenessChecker delegate, Duration staleness) {
+    this.delegate = delegate;
+    this.stalenessNanos = staleness.toNanos();
+  }
+
+  @Override
+  public boolean isAlive(WebDriver driver) {
+    Long seen = lastSeenAlive.get(driver);
+    if (seen != null && System.nanoTime() - seen < stalenessNanos) {
+      return true;
+    }
+    if (delegate.isAlive(driver)) {
+      markAlive(driver);
+      return true;
+    }
+    lastSeenAlive.remove(driver);
+    return false;
+  }
+
+  /**
+   * Reports that the driver has just executed a command successfully.
+   */
+  public void markAlive(WebDriver driver) {
+    lastSeenAlive.put(driver, System.nanoTime());
+  }
+
+  /**
+   * Forces the actual check on the next request for the driver, e.g. after a command failed.
+   */
+  public void invalidate(WebDriver driver) {
+    lastSeenAlive.remove(driver);
+  }
+}
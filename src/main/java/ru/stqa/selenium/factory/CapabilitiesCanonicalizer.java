@@ -0,0 +1,116 @@
+/*
+ * Copyright 2020 Alexei Barantsev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ru.stqa.selenium.factory;
+
+import com.google.common.collect.MapMaker;
+import org.openqa.selenium.Capabilities;
+import org.openqa.selenium.ImmutableCapabilities;
+import org.openqa.selenium.Platform;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Brings the capabilities to a canonical form, so that the semantically equal requests are served by
+ * the same driver regardless of the way they are built: {@code DesiredCapabilities} or browser options,
+ * with the default values present or absent.
+ *
+ * The canonical form is an immutable copy with the maps sorted by key, and with no "defaulted" values:
+ * nulls, empty strings, empty lists and maps, and {@link Platform#ANY}.
+ *
+ * The canonical forms of immutable capabilities are memoized by identity, so that a repeated request
+ * with the same instance is neither canonicalized nor hashed again. A mutable instance can be modified
+ * between the requests, so it is canonicalized anew each time. A canonical form is returned as is.
+ */
+public final class CapabilitiesCanonicalizer {
+
+  // weak keys are compared by identity
+  private final Map<Capabilities, Capabilities> memo = new MapMaker().weakKeys().makeMap();
+
+  public Capabilities canonicalize(Capabilities capabilities) {
+    if (capabilities instanceof Canonical) {
+      return capabilities;
+    }
+    boolean immutable = capabilities instanceof ImmutableCapabilities;
+    if (immutable) {
+      Capabilities canonical = memo.get(capabilities);
+      if (canonical != null) {
+        return canonical;
+      }
+    }
+    Capabilities canonical = new Canonical(normalizeMap(capabilities.asMap()));
+    if (immutable) {
+      memo.put(capabilities, canonical);
+    }
+    return canonical;
+  }
+
+  /**
+   * Checks if the capabilities are a canonical form, which is immutable all the way down.
+   */
+  static boolean isCanonical(Capabilities capabilities) {
+    return capabilities instanceof Canonical;
+  }
+
+  private Map<String, Object> normalizeMap(Map<?, ?> map) {
+    Map<String, Object> normalized = new TreeMap<>();
+    for (Map.Entry<?, ?> entry : map.entrySet()) {
+      Object value = normalize(entry.getValue());
+      if (value != null) {
+        normalized.put(String.valueOf(entry.getKey()), value);
+      }
+    }
+    return Collections.unmodifiableMap(normalized);
+  }
+
+  /**
+   * @return the normalized value, or null if the value is a default one and should be omitted
+   */
+  private Object normalize(Object value) {
+    if (value == null || value == Platform.ANY || "".equals(value)) {
+      return null;
+    }
+    if (value instanceof Capabilities) {
+      value = ((Capabilities) value).asMap();
+    }
+    if (value instanceof Map) {
+      Map<String, Object> map = normalizeMap((Map<?, ?>) value);
+      return map.isEmpty() ? null : map;
+    }
+    if (value instanceof Collection) {
+      List<Object> list = new ArrayList<>();
+      for (Object item : (Collection<?>) value) {
+        Object normalized = normalize(item);
+        if (normalized != null) {
+          list.add(normalized);
+        }
+      }
+      return list.isEmpty() ? null : Collections.unmodifiableList(list);
+    }
+    return value;
+  }
+
+  private static final class Canonical extends ImmutableCapabilities {
+    Canonical(Map<String, Object> capabilities) {
+      super(capabilities);
+    }
+  }
+}
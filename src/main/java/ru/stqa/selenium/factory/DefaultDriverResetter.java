@@ -0,0 +1,61 @@
+/*
+ * Copyright 2020 Alexei Barantsev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ru.stqa.selenium.factory;
+
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Closes all the windows but one, clears local and session storage and deletes cookies of the current page,
+ * and navigates to about:blank.
+ *
+ * Cookies of other domains are not deleted, WebDriver can only access the cookies of the current page.
+ */
+public class DefaultDriverResetter implements DriverResetter {
+
+  @Override
+  public void reset(WebDriver driver) {
+    closeExtraWindows(driver);
+    if (driver instanceof JavascriptExecutor) {
+      try {
+        ((JavascriptExecutor) driver).executeScript(
+          "try { window.localStorage.clear(); window.sessionStorage.clear(); } catch (e) {}");
+      } catch (WebDriverException e) {
+        // the page does not allow scripts or storage, there is nothing to clear
+      }
+    }
+    driver.manage().deleteAllCookies();
+    driver.get("about:blank");
+  }
+
+  private void closeExtraWindows(WebDriver driver) {
+    List<String> handles = new ArrayList<>(driver.getWindowHandles());
+    if (handles.size() < 2) {
+      return;
+    }
+    String keep = handles.get(0);
+    for (String handle : handles.subList(1, handles.size())) {
+      driver.switchTo().window(handle);
+      driver.close();
+    }
+    driver.switchTo().window(keep);
+  }
+}
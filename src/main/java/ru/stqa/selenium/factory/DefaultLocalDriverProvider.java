@@ -36,8 +36,14 @@ import org.openqa.selenium.safari.SafariOptions;
 import java.util.Map;
 import java.util.function.Function;
 
+/**
+ * Creates drivers with the creators of the registry, if there is one for the browser,
+ * or with the standard drivers otherwise.
+ */
 public class DefaultLocalDriverProvider implements LocalDriverProvider {
 
+  private final DriverCreatorRegistry registry;
+
   private final Map<String, Function<Capabilities, WebDriver>> creators = new ImmutableMap.Builder<String, Function<Capabilities, WebDriver>>()
     .put(BrowserType.CHROME, caps -> new ChromeDriver(new ChromeOptions().merge(caps)))
     .put(BrowserType.FIREFOX, caps -> new FirefoxDriver(new FirefoxOptions().merge(caps)))
@@ -52,6 +58,24 @@ public class DefaultLocalDriverProvider implements LocalDriverProvider {
     .put(BrowserType.HTMLUNIT, "org.openqa.selenium.htmlunit.HtmlUnitDriver")
     .build();
 
+  /**
+   * Uses the creators discovered with {@link java.util.ServiceLoader}.
+   */
+  public DefaultLocalDriverProvider() {
+    this(DriverCreatorRegistry.withServices());
+  }
+
+  public DefaultLocalDriverProvider(DriverCreatorRegistry registry) {
+    this.registry = registry;
+  }
+
+  /**
+   * Returns the registry to register custom creators at runtime.
+   */
+  public DriverCreatorRegistry getRegistry() {
+    return registry;
+  }
+
   public WebDriver createDriver(ChromeOptions options) {
     return new ChromeDriver(options);
   }
@@ -77,6 +101,11 @@ public class DefaultLocalDriverProvider implements LocalDriverProvider {
   }
 
   public WebDriver createDriver(Capabilities capabilities) {
+    DriverCreator registered = registry.find(capabilities);
+    if (registered != null) {
+      return registered.createDriver(capabilities);
+    }
+
     String browserName = capabilities.getBrowserName();
     Function<Capabilities, WebDriver> creator = creators.get(browserName);
     if (creator != null) {
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2020 Alexei Barantsev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ru.stqa.selenium.factory;
+
+import org.openqa.selenium.Capabilities;
+import org.openqa.selenium.WebDriver;
+
+/**
+ * Creates local drivers for a browser. Implementations can be registered in a {@link DriverCreatorRegistry}
+ * at runtime, or discovered with {@link java.util.ServiceLoader} from
+ * {@code META-INF/services/ru.stqa.selenium.factory.DriverCreator}.
+ */
+public interface DriverCreator {
+
+  /**
+   * The browser name the creator is looked up by.
+   */
+  String getBrowserName();
+
+  /**
+   * Checks if the creator can handle the capabilities, e.g. a platform or a browser version.
+   * The first of the creators registered for the browser name that supports the capabilities is used.
+   */
+  default boolean supports(Capabilities capabilities) {
+    return true;
+  }
+
+  WebDriver createDriver(Capabilities capabilities);
+}
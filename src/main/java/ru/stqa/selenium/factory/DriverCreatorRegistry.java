@@ -0,0 +1,89 @@
+/*
+ * Copyright 2020 Alexei Barantsev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ru.stqa.selenium.factory;
+
+import org.openqa.selenium.Capabilities;
+import org.openqa.selenium.WebDriver;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.function.Function;
+
+/**
+ * A lookup table of {@link DriverCreator}s by browser name.
+ *
+ * Registration copies the table, so lookups are lock-free reads of an immutable map.
+ * A creator registered later takes precedence over the earlier ones for the same browser name.
+ */
+public class DriverCreatorRegistry {
+
+  private volatile Map<String, List<DriverCreator>> creators = Collections.emptyMap();
+
+  /**
+   * Creates a registry that contains the creators discovered with {@link ServiceLoader}.
+   */
+  public static DriverCreatorRegistry withServices() {
+    DriverCreatorRegistry registry = new DriverCreatorRegistry();
+    for (DriverCreator creator : ServiceLoader.load(DriverCreator.class)) {
+      registry.register(creator);
+    }
+    return registry;
+  }
+
+  public synchronized void register(DriverCreator creator) {
+    Map<String, List<DriverCreator>> updated = new HashMap<>(creators);
+    List<DriverCreator> forBrowser = new ArrayList<>();
+    forBrowser.add(creator);
+    forBrowser.addAll(updated.getOrDefault(creator.getBrowserName(), Collections.emptyList()));
+    updated.put(creator.getBrowserName(), Collections.unmodifiableList(forBrowser));
+    creators = Collections.unmodifiableMap(updated);
+  }
+
+  public void register(String browserName, Function<Capabilities, WebDriver> creator) {
+    register(new DriverCreator() {
+      @Override
+      public String getBrowserName() {
+        return browserName;
+      }
+
+      @Override
+      public WebDriver createDriver(Capabilities capabilities) {
+        return creator.apply(capabilities);
+      }
+    });
+  }
+
+  /**
+   * @return the creator for the capabilities, or null if there is no such creator
+   */
+  public DriverCreator find(Capabilities capabilities) {
+    List<DriverCreator> forBrowser = creators.get(capabilities.getBrowserName());
+    if (forBrowser == null) {
+      return null;
+    }
+    for (DriverCreator creator : forBrowser) {
+      if (creator.supports(capabilities)) {
+        return creator;
+      }
+    }
+    return null;
+  }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2020 Alexei Barantsev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ru.stqa.selenium.factory;
+
+import org.openqa.selenium.WebDriver;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Thrown when some drivers failed to quit, or did not quit in time, on dismissal of all the drivers.
+ * The drivers are removed from the pool anyway.
+ */
+public class DriverDismissalError extends RuntimeException {
+
+  private final Map<WebDriver, Throwable> failures;
+
+  public DriverDismissalError(Map<WebDriver, Throwable> failures) {
+    super(failures.size() + " driver(s) failed to quit: " + failures.keySet());
+    this.failures = Collections.unmodifiableMap(failures);
+    failures.values().forEach(this::addSuppressed);
+  }
+
+  /**
+   * Returns the drivers that failed to quit, along with the failure reasons.
+   */
+  public Map<WebDriver, Throwable> getFailures() {
+    return failures;
+  }
+}
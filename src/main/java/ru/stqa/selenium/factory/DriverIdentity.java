@@ -0,0 +1,63 @@
+/*
+ * Copyright 2020 Alexei Barantsev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ru.stqa.selenium.factory;
+
+import org.openqa.selenium.WebDriver;
+
+import java.util.Collection;
+import java.util.Iterator;
+
+/**
+ * A map key that compares drivers by identity. A driver, or a decorator around it, may implement
+ * {@code equals} and {@code hashCode} in a way that is slow or inconsistent, and the pools should not depend on it.
+ */
+final class DriverIdentity {
+
+  private final WebDriver driver;
+
+  DriverIdentity(WebDriver driver) {
+    this.driver = driver;
+  }
+
+  WebDriver getDriver() {
+    return driver;
+  }
+
+  /**
+   * Removes the first occurrence of the driver from the collection, comparing by identity
+   * rather than with {@code Collection.remove}, which calls {@code equals}.
+   */
+  static boolean remove(Collection<WebDriver> drivers, WebDriver driver) {
+    for (Iterator<WebDriver> it = drivers.iterator(); it.hasNext(); ) {
+      if (it.next() == driver) {
+        it.remove();
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    return o instanceof DriverIdentity && ((DriverIdentity) o).driver == driver;
+  }
+
+  @Override
+  public int hashCode() {
+    return System.identityHashCode(driver);
+  }
+}
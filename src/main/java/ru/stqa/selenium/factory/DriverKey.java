@@ -0,0 +1,77 @@
+/*
+ * Copyright 2020 Alexei Barantsev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ru.stqa.selenium.factory;
+
+import org.openqa.selenium.Capabilities;
+
+import java.net.URL;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Identifies a "flavour" of WebDriver in a pool: the capabilities and the hub address.
+ *
+ * The key takes a shallow snapshot of the capabilities, so that a client can add or remove capabilities after
+ * the request. The nested values, such as the browser options, are shared with the client and should not be
+ * modified. A canonical form made by {@link CapabilitiesCanonicalizer} is immutable all the way down, and it is
+ * used as is. The hash code is order-independent and computed once, keys with different hash codes
+ * are compared in constant time. The hub is compared as a string, {@link URL#equals(Object)} resolves host names.
+ */
+public final class DriverKey {
+
+  private final Map<String, Object> capabilities;
+  private final String hub;
+  private final int hash;
+
+  private DriverKey(Map<String, Object> capabilities, String hub) {
+    this.capabilities = capabilities;
+    this.hub = hub;
+    this.hash = 31 * capabilities.hashCode() + Objects.hashCode(hub);
+  }
+
+  public static DriverKey of(Capabilities capabilities, URL hub) {
+    // a canonical form can't change, there is nothing to take a snapshot of
+    Map<String, Object> map = CapabilitiesCanonicalizer.isCanonical(capabilities)
+                              ? capabilities.asMap()
+                              : Collections.unmodifiableMap(new HashMap<>(capabilities.asMap()));
+    return new DriverKey(map, hub == null ? null : hub.toExternalForm());
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof DriverKey)) {
+      return false;
+    }
+    DriverKey that = (DriverKey) o;
+    return hash == that.hash && Objects.equals(hub, that.hub) && capabilities.equals(that.capabilities);
+  }
+
+  @Override
+  public int hashCode() {
+    return hash;
+  }
+
+  @Override
+  public String toString() {
+    return capabilities + (hub == null ? "" : ":" + hub);
+  }
+}
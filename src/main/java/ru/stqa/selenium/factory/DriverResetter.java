@@ -0,0 +1,28 @@
+/*
+ * Copyright 2020 Alexei Barantsev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ru.stqa.selenium.factory;
+
+import org.openqa.selenium.WebDriver;
+
+/**
+ * Cleans up a driver before it is handed to another client, so that the browser can be reused
+ * instead of being quit and launched again. A driver that could not be reset should not be reused,
+ * so a resetter should throw an exception in this case.
+ */
+public interface DriverResetter {
+  void reset(WebDriver driver);
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2020 Alexei Barantsev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ru.stqa.selenium.factory;
+
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.os.CommandLine;
+import org.openqa.selenium.remote.CommandExecutor;
+import org.openqa.selenium.remote.RemoteWebDriver;
+import org.openqa.selenium.remote.service.DriverCommandExecutor;
+import org.openqa.selenium.remote.service.DriverService;
+
+import java.lang.reflect.Field;
+
+/**
+ * Destroys the process of the driver service (chromedriver, geckodriver etc.) that a local driver talks to.
+ * Remote drivers and drivers that don't use a driver service are left untouched.
+ *
+ * Selenium does not expose the service of a driver, so it is obtained by reflection.
+ * The service is not stopped the usual way because a hanging quit may hold the service lock.
+ */
+public class DriverServiceKiller implements DriverKiller {
+
+  @Override
+  public void kill(WebDriver driver) {
+    if (!(driver instanceof RemoteWebDriver)) {
+      return;
+    }
+    CommandExecutor executor = ((RemoteWebDriver) driver).getCommandExecutor();
+    if (!(executor instanceof DriverCommandExecutor)) {
+      return;
+    }
+    try {
+      DriverService service = (DriverService) readField(DriverCommandExecutor.class, "service", executor);
+      CommandLine process = (CommandLine) readField(DriverService.class, "process", service);
+      if (process != null) {
+        process.destroy();
+      }
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      // nothing else can be done
+    }
+  }
+
+  private Object readField(Class<?> owner, String name, Object target) throws ReflectiveOperationException {
+    Field field = owner.getDeclaredField(name);
+    field.setAccessible(true);
+    return field.get(target);
+  }
+}
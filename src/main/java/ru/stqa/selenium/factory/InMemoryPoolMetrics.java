@@ -0,0 +1,215 @@
+/*
+ * Copyright 2020 Alexei Barantsev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ru.stqa.selenium.factory;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects the metrics of a pool in memory: latency histograms of driver creation (overall and per key),
+ * aliveness checks and quits, reuse, recreation and retirement counters, and the number of live drivers.
+ *
+ * The metrics can be published to JMX with {@link #registerMBean(String)}.
+ */
+public class InMemoryPoolMetrics implements PoolMetrics, PoolMetricsMXBean {
+
+  private final LatencyHistogram creation = new LatencyHistogram();
+  private final Map<DriverKey, LatencyHistogram> creationByKey = new ConcurrentHashMap<>();
+  private final LatencyHistogram failedCreation = new LatencyHistogram();
+  private final LatencyHistogram alivenessCheck = new LatencyHistogram();
+  private final LatencyHistogram quit = new LatencyHistogram();
+  private final LongAdder failedQuits = new LongAdder();
+  private final LongAdder discardedDrivers = new LongAdder();
+
+  private final LongAdder reuseHits = new LongAdder();
+  private final LongAdder keyChangeRecreations = new LongAdder();
+  private final LongAdder deadDriverRecreations = new LongAdder();
+  private final LongAdder retiredDrivers = new LongAdder();
+
+  @Override
+  public void driverCreated(DriverKey key, Duration duration) {
+    creation.record(duration);
+    creationByKey.computeIfAbsent(key, k -> new LatencyHistogram()).record(duration);
+  }
+
+  @Override
+  public void driverCreationFailed(DriverKey key, Duration duration) {
+    failedCreation.record(duration);
+  }
+
+  @Override
+  public void driverReused(DriverKey key) {
+    reuseHits.increment();
+  }
+
+  @Override
+  public void driverRecreatedOnKeyChange(DriverKey key) {
+    keyChangeRecreations.increment();
+  }
+
+  @Override
+  public void driverRecreatedAsDead(DriverKey key) {
+    deadDriverRecreations.increment();
+  }
+
+  @Override
+  public void driverRetired(DriverKey key) {
+    retiredDrivers.increment();
+  }
+
+  @Override
+  public void alivenessChecked(Duration duration) {
+    alivenessCheck.record(duration);
+  }
+
+  @Override
+  public void driverQuit(Duration duration, boolean succeeded) {
+    quit.record(duration);
+    if (!succeeded) {
+      failedQuits.increment();
+    }
+  }
+
+  @Override
+  public void driverDiscarded() {
+    discardedDrivers.increment();
+  }
+
+  public LatencyHistogram getCreationLatency() {
+    return creation;
+  }
+
+  public Map<DriverKey, LatencyHistogram> getCreationLatencyByKey() {
+    return Collections.unmodifiableMap(creationByKey);
+  }
+
+  public LatencyHistogram getAlivenessCheckLatency() {
+    return alivenessCheck;
+  }
+
+  public LatencyHistogram getQuitLatency() {
+    return quit;
+  }
+
+  /**
+   * Publishes the metrics to the platform MBean server.
+   * @param name The name of the pool, to tell the pools apart
+   * @return The name of the registered MBean, to unregister it later
+   */
+  public ObjectName registerMBean(String name) {
+    try {
+      ObjectName objectName = new ObjectName("ru.stqa.selenium.factory:type=WebDriverPool,name=" + ObjectName.quote(name));
+      ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+      return objectName;
+    } catch (JMException e) {
+      throw new IllegalStateException("Cannot register pool metrics in JMX: " + name, e);
+    }
+  }
+
+  @Override
+  public long getLiveDrivers() {
+    return creation.getCount() - quit.getCount() - discardedDrivers.sum();
+  }
+
+  @Override
+  public long getCreatedDrivers() {
+    return creation.getCount();
+  }
+
+  @Override
+  public long getFailedCreations() {
+    return failedCreation.getCount();
+  }
+
+  @Override
+  public double getMeanCreationMillis() {
+    return toMillis(creation.getMean());
+  }
+
+  @Override
+  public double getMaxCreationMillis() {
+    return toMillis(creation.getMax());
+  }
+
+  @Override
+  public Map<String, Double> getMeanCreationMillisByKey() {
+    Map<String, Double> result = new HashMap<>();
+    creationByKey.forEach((key, histogram) -> result.put(key.toString(), toMillis(histogram.getMean())));
+    return result;
+  }
+
+  @Override
+  public long getReuseHits() {
+    return reuseHits.sum();
+  }
+
+  @Override
+  public long getKeyChangeRecreations() {
+    return keyChangeRecreations.sum();
+  }
+
+  @Override
+  public long getDeadDriverRecreations() {
+    return deadDriverRecreations.sum();
+  }
+
+  @Override
+  public long getRetiredDrivers() {
+    return retiredDrivers.sum();
+  }
+
+  @Override
+  public double getMeanAlivenessCheckMillis() {
+    return toMillis(alivenessCheck.getMean());
+  }
+
+  @Override
+  public long getQuitDrivers() {
+    return quit.getCount();
+  }
+
+  @Override
+  public long getFailedQuits() {
+    return failedQuits.sum();
+  }
+
+  @Override
+  public double getMeanQuitMillis() {
+    return toMillis(quit.getMean());
+  }
+
+  @Override
+  public double getMaxQuitMillis() {
+    return toMillis(quit.getMax());
+  }
+
+  @Override
+  public long getDiscardedDrivers() {
+    return discardedDrivers.sum();
+  }
+
+  private static double toMillis(Duration duration) {
+    return duration.toNanos() / 1_000_000.0;
+  }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2020 Alexei Barantsev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ru.stqa.selenium.factory;
+
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+
+/**
+ * Considers a browser exhausted if the JavaScript heap of the current page exceeds the threshold.
+ * Relies on non-standard {@code performance.memory} that is available in Chromium-based browsers only,
+ * other browsers are never considered exhausted.
+ */
+public class JsHeapSizeProbe implements DriverResourceProbe {
+
+  private final long maxUsedBytes;
+
+  public JsHeapSizeProbe(long maxUsedBytes) {
+    this.maxUsedBytes = maxUsedBytes;
+  }
+
+  @Override
+  public boolean isExhausted(WebDriver driver) {
+    if (!(driver instanceof JavascriptExecutor)) {
+      return false;
+    }
+    try {
+      Object used = ((JavascriptExecutor) driver).executeScript(
+        "return window.performance && window.performance.memory ? window.performance.memory.usedJSHeapSize : 0;");
+      return used instanceof Number && ((Number) used).longValue() > maxUsedBytes;
+    } catch (WebDriverException e) {
+      return false;
+    }
+  }
+}
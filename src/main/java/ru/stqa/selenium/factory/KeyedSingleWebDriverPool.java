@@ -0,0 +1,109 @@
+/*
+ * Copyright 2020 Alexei Barantsev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ru.stqa.selenium.factory;
+
+import org.openqa.selenium.Capabilities;
+import org.openqa.selenium.WebDriver;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps at most one driver for each set of capabilities, so that a suite that alternates browsers reuses
+ * the warm ones instead of relaunching a browser on each change. The number of live drivers is limited,
+ * the least recently requested driver is quit to make room for a new one.
+ *
+ * Like {@link SingleWebDriverPool} the pool is intended for sequential tests and is not thread-safe.
+ */
+public final class KeyedSingleWebDriverPool extends AbstractWebDriverPool {
+
+  private final int maxDrivers;
+  // in the access order, the least recently requested driver comes first
+  private final Map<DriverKey, WebDriver> drivers = new LinkedHashMap<>(16, 0.75f, true);
+
+  public KeyedSingleWebDriverPool() {
+    this(2);
+  }
+
+  /**
+   * @param maxDrivers The maximum number of live drivers
+   */
+  public KeyedSingleWebDriverPool(int maxDrivers) {
+    if (maxDrivers < 1) {
+      throw new IllegalArgumentException("Inconsistent limit: maxDrivers=" + maxDrivers);
+    }
+    this.maxDrivers = maxDrivers;
+    Runtime.getRuntime().addShutdownHook(new Thread(KeyedSingleWebDriverPool.this::dismissAllOnShutdown));
+  }
+
+  @Override
+  public WebDriver getDriver(URL hub, Capabilities capabilities) {
+    DriverKey newKey = createKey(capabilities, hub);
+    WebDriver driver = drivers.get(newKey);
+    if (driver != null) {
+      // Check the browser is alive
+      if (isAlive(driver)) {
+        getMetrics().driverReused(newKey);
+        return driver;
+      }
+      getMetrics().driverRecreatedAsDead(newKey);
+      drivers.remove(newKey);
+      discard(driver);
+
+    } else if (drivers.size() >= maxDrivers) {
+      // A different flavour of WebDriver is required, and there is no room for one more
+      getMetrics().driverRecreatedOnKeyChange(newKey);
+      Iterator<WebDriver> leastRecentlyUsed = drivers.values().iterator();
+      WebDriver evicted = leastRecentlyUsed.next();
+      leastRecentlyUsed.remove();
+      quit(evicted);
+    }
+
+    driver = newDriver(newKey, hub, capabilities);
+    drivers.put(newKey, driver);
+    return driver;
+  }
+
+  @Override
+  public void dismissDriver(WebDriver driver) {
+    // there are few drivers, a scan is cheaper than an index
+    for (Iterator<WebDriver> owned = drivers.values().iterator(); owned.hasNext(); ) {
+      if (owned.next() == driver) {
+        owned.remove();
+        quit(driver);
+        return;
+      }
+    }
+    throw new Error("The driver is not owned by the factory: " + driver);
+  }
+
+  @Override
+  public void dismissAll() {
+    List<WebDriver> dismissed = new ArrayList<>(drivers.values());
+    drivers.clear();
+    quitAll(dismissed);
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return drivers.isEmpty();
+  }
+}
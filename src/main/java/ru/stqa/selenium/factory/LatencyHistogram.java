@@ -0,0 +1,85 @@
+/*
+ * Copyright 2020 Alexei Barantsev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ru.stqa.selenium.factory;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram of durations with power-of-two millisecond buckets: [0, 1), [1, 2), [2, 4) ... ms.
+ * Percentiles are approximated by the upper bound of the bucket.
+ */
+public final class LatencyHistogram {
+
+  private static final int BUCKETS = 32;
+
+  private final LongAdder[] buckets = new LongAdder[BUCKETS];
+  private final LongAdder count = new LongAdder();
+  private final LongAdder totalNanos = new LongAdder();
+  private final AtomicLong maxNanos = new AtomicLong();
+
+  public LatencyHistogram() {
+    for (int i = 0; i < BUCKETS; i++) {
+      buckets[i] = new LongAdder();
+    }
+  }
+
+  public void record(Duration duration) {
+    long nanos = Math.max(0, duration.toNanos());
+    long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+    int bucket = millis == 0 ? 0 : Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(millis));
+    buckets[bucket].increment();
+    count.increment();
+    totalNanos.add(nanos);
+    maxNanos.accumulateAndGet(nanos, Math::max);
+  }
+
+  public long getCount() {
+    return count.sum();
+  }
+
+  public Duration getMean() {
+    long n = count.sum();
+    return n == 0 ? Duration.ZERO : Duration.ofNanos(totalNanos.sum() / n);
+  }
+
+  public Duration getMax() {
+    return Duration.ofNanos(maxNanos.get());
+  }
+
+  /**
+   * Returns the upper bound of the bucket the given percentile falls into.
+   * @param percentile The percentile, from 0 to 100
+   */
+  public Duration getPercentile(double percentile) {
+    long n = count.sum();
+    if (n == 0) {
+      return Duration.ZERO;
+    }
+    long rank = (long) Math.ceil(n * percentile / 100);
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += buckets[i].sum();
+      if (seen >= rank) {
+        return Duration.ofMillis(1L << i);
+      }
+    }
+    return getMax();
+  }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2020 Alexei Barantsev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ru.stqa.selenium.factory;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Limits the number of browsers that are launched simultaneously. Launching many browsers at once
+ * makes each of them start much slower than launching them in waves, because they compete for CPU and disk.
+ *
+ * There is a global limit and optional limits per browser name. An adaptive throttle starts with one launch
+ * at a time and allows one more after each fast launch, up to the global limit. If a launch is much slower
+ * than the fastest ones observed, the limit is halved.
+ */
+public final class LaunchThrottle {
+
+  private static final long SLOWDOWN_FACTOR = 2;
+
+  private final Limit global;
+  private final Map<String, Limit> browserLimits = new HashMap<>();
+  private final int maxLaunches;
+  private final boolean adaptive;
+  private long baselineNanos;
+
+  public LaunchThrottle(int maxLaunches) {
+    this(maxLaunches, Collections.emptyMap(), false);
+  }
+
+  /**
+   * @param maxLaunches The maximum number of simultaneous launches
+   * @param browserLimits The maximum numbers of simultaneous launches per browser name
+   * @param adaptive If true, the global limit is adjusted according to the observed launch latency
+   */
+  public LaunchThrottle(int maxLaunches, Map<String, Integer> browserLimits, boolean adaptive) {
+    if (maxLaunches < 1) {
+      throw new IllegalArgumentException("Inconsistent limit: maxLaunches=" + maxLaunches);
+    }
+    this.maxLaunches = maxLaunches;
+    this.adaptive = adaptive;
+    this.global = new Limit(adaptive ? 1 : maxLaunches);
+    browserLimits.forEach((browser, limit) -> {
+      if (limit < 1) {
+        throw new IllegalArgumentException("Inconsistent limit for " + browser + ": " + limit);
+      }
+      this.browserLimits.put(browser, new Limit(limit));
+    });
+  }
+
+  /**
+   * Returns the current global limit, it changes over time for an adaptive throttle.
+   */
+  public int getCurrentLimit() {
+    return global.get();
+  }
+
+  /**
+   * Waits for a permission to launch a browser.
+   * @return the permit to be released when the launch is over
+   */
+  Permit acquire(String browserName) throws InterruptedException {
+    Limit browser = browserName == null ? null : browserLimits.get(browserName);
+    // a browser permit first, so that a launch waiting for its browser does not hold a global one
+    if (browser != null) {
+      browser.acquire();
+    }
+    try {
+      global.acquire();
+    } catch (InterruptedException e) {
+      if (browser != null) {
+        browser.release();
+      }
+      throw e;
+    }
+    return new Permit(browser);
+  }
+
+  private synchronized void adapt(long latencyNanos) {
+    if (baselineNanos == 0 || latencyNanos < baselineNanos) {
+      baselineNanos = latencyNanos;
+      global.set(Math.min(global.get() + 1, maxLaunches));
+    } else if (latencyNanos > SLOWDOWN_FACTOR * baselineNanos) {
+      global.set(Math.max(global.get() / 2, 1));
+      // the baseline follows the observed latency slowly, so that it does not get stuck on an exceptional value
+      baselineNanos += (latencyNanos - baselineNanos) / 16;
+    } else {
+      global.set(Math.min(global.get() + 1, maxLaunches));
+      baselineNanos += (latencyNanos - baselineNanos) / 16;
+    }
+  }
+
+  /**
+   * A permit is released once, the subsequent releases do nothing. So a launch that is abandoned as stuck
+   * gives its permit back right away, and does not give it back once again when it is over.
+   */
+  final class Permit {
+    private final Limit browser;
+    private final AtomicBoolean released = new AtomicBoolean();
+
+    private Permit(Limit browser) {
+      this.browser = browser;
+    }
+
+    /**
+     * @param latencyNanos The launch time, it is taken into account by an adaptive throttle if the launch succeeded
+     * @param succeeded true if the browser was launched
+     */
+    void release(long latencyNanos, boolean succeeded) {
+      if (!released.compareAndSet(false, true)) {
+        return;
+      }
+      if (adaptive && succeeded) {
+        adapt(latencyNanos);
+      }
+      global.release();
+      if (browser != null) {
+        browser.release();
+      }
+    }
+  }
+
+  /**
+   * A semaphore that allows to change the number of permits, the permits in use are not revoked.
+   */
+  private static final class Limit {
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+    private int limit;
+    private int inUse;
+
+    Limit(int limit) {
+      this.limit = limit;
+    }
+
+    int get() {
+      lock.lock();
+      try {
+        return limit;
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    void set(int newLimit) {
+      lock.lock();
+      try {
+        limit = newLimit;
+        available.signalAll();
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    void acquire() throws InterruptedException {
+      lock.lock();
+      try {
+        while (inUse >= limit) {
+          available.await();
+        }
+        inUse++;
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    void release() {
+      lock.lock();
+      try {
+        inUse--;
+        available.signal();
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+}
@@ -22,37 +22,48 @@ import org.openqa.selenium.WebDriver;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Creates a new driver on each request. The pool is thread-safe, the drivers are tracked by identity,
+ * and removal of a driver from the pool is the "claim" that allows exactly one caller to quit it.
+ * All the drivers are handed out to the clients, so the pool does not check them in background.
+ */
 public final class LooseWebDriverPool extends AbstractWebDriverPool {
 
-  private final List<WebDriver> drivers = new ArrayList<>();
+  private final Map<DriverIdentity, WebDriver> drivers = new ConcurrentHashMap<>();
 
   public LooseWebDriverPool() {
-    Runtime.getRuntime().addShutdownHook(new Thread(LooseWebDriverPool.this::dismissAll));
+    Runtime.getRuntime().addShutdownHook(new Thread(LooseWebDriverPool.this::dismissAllOnShutdown));
   }
 
   @Override
   public WebDriver getDriver(URL hub, Capabilities capabilities) {
-    WebDriver driver = newDriver(hub, capabilities);
-    drivers.add(driver);
+    WebDriver driver = newDriver(createKey(capabilities, hub), hub, capabilities);
+    drivers.put(new DriverIdentity(driver), driver);
     return driver;
   }
 
   @Override
   public void dismissDriver(WebDriver driver) {
-    if (! drivers.contains(driver)) {
+    if (drivers.remove(new DriverIdentity(driver)) == null) {
       throw new Error("The driver is not owned by the factory: " + driver);
     }
-    driver.quit();
-    drivers.remove(driver);
+    quit(driver);
   }
 
   @Override
   public void dismissAll() {
-    for (WebDriver driver : new ArrayList<>(drivers)) {
-      driver.quit();
-      drivers.remove(driver);
+    // every driver that was in the pool when the call started is either claimed here or by a concurrent dismissal
+    List<WebDriver> dismissed = new ArrayList<>();
+    for (DriverIdentity identity : drivers.keySet()) {
+      WebDriver driver = drivers.remove(identity);
+      if (driver != null) {
+        dismissed.add(driver);
+      }
     }
+    quitAll(dismissed);
   }
 
   @Override
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2020 Alexei Barantsev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ru.stqa.selenium.factory;
+
+import org.openqa.selenium.WebDriver;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A handle of a driver in a pool that holds everything the pool knows about the driver,
+ * so that it takes a single lookup by identity to find it.
+ */
+final class ManagedDriver {
+
+  private final WebDriver driver;
+  private final DriverIdentity identity;
+  private final DriverKey key;
+  private final Object owner;
+  private final long createdNanos;
+  private final AtomicInteger uses;
+  private final AtomicReference<CompletableFuture<WebDriver>> replacement = new AtomicReference<>();
+
+  /**
+   * @param owner The thread or scope the driver is bound to, or null for a driver that is not bound
+   */
+  ManagedDriver(WebDriver driver, DriverKey key, Object owner) {
+    this.driver = driver;
+    this.identity = new DriverIdentity(driver);
+    this.key = key;
+    this.owner = owner;
+    this.createdNanos = System.nanoTime();
+    this.uses = new AtomicInteger();
+  }
+
+  /**
+   * Creates a handle of the same driver for another owner, the age and the use count are preserved.
+   */
+  ManagedDriver(ManagedDriver managed, Object owner) {
+    this.driver = managed.driver;
+    this.identity = managed.identity;
+    this.key = managed.key;
+    this.owner = owner;
+    this.createdNanos = managed.createdNanos;
+    this.uses = new AtomicInteger(managed.uses.get());
+  }
+
+  WebDriver getDriver() {
+    return driver;
+  }
+
+  DriverIdentity getIdentity() {
+    return identity;
+  }
+
+  DriverKey getKey() {
+    return key;
+  }
+
+  Object getOwner() {
+    return owner;
+  }
+
+  long getCreatedNanos() {
+    return createdNanos;
+  }
+
+  /**
+   * Counts a use of the driver.
+   * @return the number of uses so far
+   */
+  int use() {
+    return uses.incrementAndGet();
+  }
+
+  int getUses() {
+    return uses.get();
+  }
+
+  /**
+   * Sets the driver that is launched in background to replace this one, if there is none yet.
+   */
+  boolean offerReplacement(CompletableFuture<WebDriver> future) {
+    return replacement.compareAndSet(null, future);
+  }
+
+  boolean hasReplacement() {
+    return replacement.get() != null;
+  }
+
+  /**
+   * Takes the replacement away, so that exactly one caller gets it.
+   * @return the replacement or null if there is none
+   */
+  CompletableFuture<WebDriver> takeReplacement() {
+    return replacement.getAndSet(null);
+  }
+}
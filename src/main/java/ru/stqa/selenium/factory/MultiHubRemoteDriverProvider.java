@@ -0,0 +1,254 @@
+/*
+ * Copyright 2020 Alexei Barantsev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ru.stqa.selenium.factory;
+
+import org.openqa.selenium.Capabilities;
+import org.openqa.selenium.WebDriver;
+
+import java.net.URL;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Spreads session creation over several hubs. The hub requested from the pool is only a part of the pool key,
+ * the sessions are created on the hubs of this provider.
+ *
+ * If session creation fails or times out, the next hub is tried. A hub that failed several times in a row
+ * is considered unhealthy and is skipped for a while, unless all the hubs are unhealthy.
+ */
+public class MultiHubRemoteDriverProvider implements RemoteDriverProvider {
+
+  private static final ExecutorService CREATION_EXECUTOR =
+    Executors.newCachedThreadPool(new DaemonThreadFactory("session-creator"));
+
+  public enum Balancing {
+    /**
+     * Prefers the hub with the least number of sessions being created right now,
+     * the hubs with the same number take turns.
+     */
+    LEAST_OUTSTANDING,
+    /**
+     * Picks a hub at random with the probability inversely proportional to its recent session creation time.
+     */
+    LATENCY_WEIGHTED
+  }
+
+  private final List<Hub> hubs = new ArrayList<>();
+  private final RemoteDriverProvider delegate;
+  private final AtomicInteger turn = new AtomicInteger();
+  private volatile Balancing balancing = Balancing.LEAST_OUTSTANDING;
+  private volatile Duration creationTimeout = Duration.ofMinutes(2);
+  private volatile int maxFailures = 3;
+  private volatile Duration cooldown = Duration.ofMinutes(1);
+
+  public MultiHubRemoteDriverProvider(Collection<URL> hubs) {
+    this(hubs, new RemoteDriverProvider() {});
+  }
+
+  /**
+   * @param hubs The hubs to spread the sessions over
+   * @param delegate The provider that creates a session on a given hub
+   */
+  public MultiHubRemoteDriverProvider(Collection<URL> hubs, RemoteDriverProvider delegate) {
+    if (hubs.isEmpty()) {
+      throw new IllegalArgumentException("No hubs");
+    }
+    for (URL hub : hubs) {
+      this.hubs.add(new Hub(hub));
+    }
+    this.delegate = delegate;
+  }
+
+  public void setBalancing(Balancing balancing) {
+    this.balancing = balancing;
+  }
+
+  /**
+   * Sets the time to wait for a session on a hub before trying the next one, two minutes by default.
+   * A session that is created too late is quit.
+   */
+  public void setCreationTimeout(Duration creationTimeout) {
+    this.creationTimeout = creationTimeout;
+  }
+
+  /**
+   * Sets the number of failures in a row that make a hub unhealthy, and the time it is skipped for.
+   */
+  public void setHealthPolicy(int maxFailures, Duration cooldown) {
+    this.maxFailures = maxFailures;
+    this.cooldown = cooldown;
+  }
+
+  @Override
+  public WebDriver createDriver(URL ignored, Capabilities capabilities) {
+    DriverCreationError error = new DriverCreationError("Can't create a session on any of the hubs " + hubs);
+    for (Hub hub : order()) {
+      try {
+        return hub.createDriver(capabilities);
+      } catch (DriverCreationError e) {
+        if (Thread.currentThread().isInterrupted()) {
+          // the caller gave up, the other hubs should not start sessions nobody is waiting for
+          throw e;
+        }
+        error.addSuppressed(e);
+      }
+    }
+    throw error;
+  }
+
+  /**
+   * Returns the healthy hubs in the order of preference, followed by the unhealthy ones.
+   */
+  private List<Hub> order() {
+    long now = System.nanoTime();
+    List<Hub> healthy = new ArrayList<>();
+    List<Hub> unhealthy = new ArrayList<>();
+    // the list is rotated, so that the sort, which is stable, breaks the ties round-robin
+    int first = Math.floorMod(turn.getAndIncrement(), hubs.size());
+    for (int i = 0; i < hubs.size(); i++) {
+      Hub hub = hubs.get((first + i) % hubs.size());
+      (hub.isHealthy(now) ? healthy : unhealthy).add(hub);
+    }
+    if (balancing == Balancing.LEAST_OUTSTANDING) {
+      healthy.sort(Comparator.comparingInt(hub -> hub.outstanding.get()));
+    } else {
+      healthy = weightedShuffle(healthy);
+    }
+    healthy.addAll(unhealthy);
+    return healthy;
+  }
+
+  private List<Hub> weightedShuffle(List<Hub> candidates) {
+    List<Hub> remaining = new ArrayList<>(candidates);
+    List<Hub> result = new ArrayList<>();
+    while (!remaining.isEmpty()) {
+      double total = remaining.stream().mapToDouble(Hub::weight).sum();
+      double point = ThreadLocalRandom.current().nextDouble(total);
+      int picked = remaining.size() - 1;
+      for (int i = 0; i < remaining.size(); i++) {
+        point -= remaining.get(i).weight();
+        if (point < 0) {
+          picked = i;
+          break;
+        }
+      }
+      result.add(remaining.remove(picked));
+    }
+    return result;
+  }
+
+  /**
+   * Returns the number of sessions being created on the hub right now.
+   */
+  public int getOutstanding(URL url) {
+    return hub(url).outstanding.get();
+  }
+
+  /**
+   * Checks if the hub is not skipped because of recent failures.
+   */
+  public boolean isHealthy(URL url) {
+    return hub(url).isHealthy(System.nanoTime());
+  }
+
+  private Hub hub(URL url) {
+    String address = url.toExternalForm();
+    return hubs.stream().filter(hub -> hub.address.equals(address)).findFirst()
+      .orElseThrow(() -> new IllegalArgumentException("Unknown hub: " + url));
+  }
+
+  private final class Hub {
+    private final URL url;
+    private final String address;
+    private final AtomicInteger outstanding = new AtomicInteger();
+    // guarded by this
+    private double latencyMillis = 1000;
+    private int failures;
+    private boolean suspended;
+    private long suspendedUntil;
+
+    Hub(URL url) {
+      this.url = url;
+      this.address = url.toExternalForm();
+    }
+
+    WebDriver createDriver(Capabilities capabilities) {
+      outstanding.incrementAndGet();
+      long start = System.nanoTime();
+      CompletableFuture<WebDriver> session =
+        CompletableFuture.supplyAsync(() -> delegate.createDriver(url, capabilities), CREATION_EXECUTOR);
+      try {
+        WebDriver driver = session.get(creationTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        succeeded(System.nanoTime() - start);
+        return driver;
+      } catch (TimeoutException e) {
+        // nobody is going to use it
+        session.thenAccept(WebDriver::quit);
+        failed();
+        throw new DriverCreationError("Session creation timed out on " + url, e);
+      } catch (ExecutionException e) {
+        failed();
+        throw new DriverCreationError("Can't create a session on " + url, e.getCause());
+      } catch (InterruptedException e) {
+        session.thenAccept(WebDriver::quit);
+        Thread.currentThread().interrupt();
+        throw new DriverCreationError(e);
+      } finally {
+        outstanding.decrementAndGet();
+      }
+    }
+
+    synchronized void succeeded(long nanos) {
+      // exponentially weighted moving average
+      latencyMillis = 0.8 * latencyMillis + 0.2 * TimeUnit.NANOSECONDS.toMillis(nanos);
+      failures = 0;
+    }
+
+    synchronized void failed() {
+      failures++;
+      if (failures >= maxFailures) {
+        suspended = true;
+        suspendedUntil = System.nanoTime() + cooldown.toNanos();
+        failures = 0;
+      }
+    }
+
+    synchronized boolean isHealthy(long now) {
+      return !suspended || now - suspendedUntil >= 0;
+    }
+
+    synchronized double weight() {
+      return 1.0 / Math.max(1, latencyMillis);
+    }
+
+    @Override
+    public String toString() {
+      return address;
+    }
+  }
+}
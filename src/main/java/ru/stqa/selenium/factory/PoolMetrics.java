@@ -0,0 +1,90 @@
+/*
+ * Copyright 2020 Alexei Barantsev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ru.stqa.selenium.factory;
+
+import java.time.Duration;
+
+/**
+ * Receives notifications about the work of a pool, to collect metrics.
+ * All the methods do nothing by default, an implementation should override the ones it is interested in.
+ * The methods are called by the threads that do the work, so an implementation must be thread-safe and fast.
+ *
+ * See {@link InMemoryPoolMetrics} for a ready-to-use implementation.
+ */
+public interface PoolMetrics {
+
+  /**
+   * Does not collect anything, it is the default.
+   */
+  PoolMetrics NONE = new PoolMetrics() {};
+
+  /**
+   * A new driver is created.
+   * @param key The key of the driver
+   * @param duration The time it took to create the driver
+   */
+  default void driverCreated(DriverKey key, Duration duration) {}
+
+  /**
+   * An attempt to create a driver failed.
+   * @param key The key of the driver
+   * @param duration The time it took to fail
+   */
+  default void driverCreationFailed(DriverKey key, Duration duration) {}
+
+  /**
+   * An existing driver is handed out instead of creating a new one.
+   * @param key The key of the driver
+   */
+  default void driverReused(DriverKey key) {}
+
+  /**
+   * A driver is dismissed to create a new one because a different flavour of WebDriver is requested.
+   * @param key The key of the requested driver
+   */
+  default void driverRecreatedOnKeyChange(DriverKey key) {}
+
+  /**
+   * A driver is dismissed to create a new one because the browser is not alive.
+   * @param key The key of the driver
+   */
+  default void driverRecreatedAsDead(DriverKey key) {}
+
+  /**
+   * A long-lived driver is to be replaced according to the recycling policy.
+   * @param key The key of the driver
+   */
+  default void driverRetired(DriverKey key) {}
+
+  /**
+   * A driver is checked to be alive.
+   * @param duration The time the check took
+   */
+  default void alivenessChecked(Duration duration) {}
+
+  /**
+   * A dismissed driver has quit, or failed to quit.
+   * @param duration The time it took to quit
+   * @param succeeded false if the quit attempt threw an exception
+   */
+  default void driverQuit(Duration duration, boolean succeeded) {}
+
+  /**
+   * A dead driver is dropped without an attempt to quit it.
+   */
+  default void driverDiscarded() {}
+}
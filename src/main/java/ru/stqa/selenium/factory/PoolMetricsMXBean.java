@@ -0,0 +1,46 @@
+/*
+ * Copyright 2020 Alexei Barantsev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ru.stqa.selenium.factory;
+
+import java.util.Map;
+
+/**
+ * JMX view of {@link InMemoryPoolMetrics}, durations are in milliseconds.
+ */
+public interface PoolMetricsMXBean {
+
+  long getLiveDrivers();
+
+  long getCreatedDrivers();
+  long getFailedCreations();
+  double getMeanCreationMillis();
+  double getMaxCreationMillis();
+  Map<String, Double> getMeanCreationMillisByKey();
+
+  long getReuseHits();
+  long getKeyChangeRecreations();
+  long getDeadDriverRecreations();
+  long getRetiredDrivers();
+
+  double getMeanAlivenessCheckMillis();
+
+  long getQuitDrivers();
+  long getFailedQuits();
+  double getMeanQuitMillis();
+  double getMaxQuitMillis();
+  long getDiscardedDrivers();
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2020 Alexei Barantsev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ru.stqa.selenium.factory;
+
+import org.openqa.selenium.WebDriver;
+
+import java.time.Duration;
+
+/**
+ * Defines when a long-lived driver should be replaced with a fresh one, to prevent the browser from slowing down
+ * because of leaked memory. A driver is retired if any of the limits is reached.
+ */
+public final class RecyclingPolicy {
+
+  /**
+   * Drivers are never retired, it is the default.
+   */
+  public static final RecyclingPolicy NEVER = new RecyclingPolicy(Integer.MAX_VALUE, null, null);
+
+  private final int maxUses;
+  private final Duration maxAge;
+  private final DriverResourceProbe probe;
+
+  public RecyclingPolicy(int maxUses, Duration maxAge) {
+    this(maxUses, maxAge, null);
+  }
+
+  /**
+   * @param maxUses The number of times a driver can be reused
+   * @param maxAge The time since the driver was created, null means no limit
+   * @param probe A probe that checks resource consumption of the browser on each reuse, null means no probe
+   */
+  public RecyclingPolicy(int maxUses, Duration maxAge, DriverResourceProbe probe) {
+    if (maxUses < 1) {
+      throw new IllegalArgumentException("Inconsistent limits: maxUses=" + maxUses);
+    }
+    this.maxUses = maxUses;
+    this.maxAge = maxAge;
+    this.probe = probe;
+  }
+
+  boolean shouldRetire(WebDriver driver, int uses, Duration age) {
+    return uses >= maxUses
+      || (maxAge != null && age.compareTo(maxAge) >= 0)
+      || (probe != null && probe.isExhausted(driver));
+  }
+}
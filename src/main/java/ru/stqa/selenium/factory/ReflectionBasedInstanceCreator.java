@@ -19,43 +19,76 @@ package ru.stqa.selenium.factory;
 import org.openqa.selenium.Capabilities;
 import org.openqa.selenium.WebDriver;
 
-import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationTargetException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 
+/**
+ * Creates drivers of a class that is not necessarily in the classpath.
+ *
+ * The constructor is resolved once per class name and cached as a method handle,
+ * a failure to resolve it is cached too.
+ */
 public class ReflectionBasedInstanceCreator {
 
+  private static final MethodHandles.Lookup LOOKUP = MethodHandles.publicLookup();
+  private static final MethodType CONSTRUCTOR_TYPE = MethodType.methodType(WebDriver.class, Capabilities.class);
+
+  private static final Map<String, Supplier<MethodHandle>> constructors = new ConcurrentHashMap<>();
+
   private final String driverClassName;
 
   public ReflectionBasedInstanceCreator(String driverClassName) {
     this.driverClassName = driverClassName;
   }
 
-  private Class<? extends WebDriver> getDriverClass() {
+  public WebDriver createDriver(Capabilities capabilities) {
+    MethodHandle constructor = constructors.computeIfAbsent(driverClassName, ReflectionBasedInstanceCreator::resolve).get();
     try {
-      return Class.forName(driverClassName).asSubclass(WebDriver.class);
-    } catch (ClassNotFoundException | NoClassDefFoundError e) {
-      throw new DriverCreationError("Driver class not found: " + driverClassName, e);
-    } catch (UnsupportedClassVersionError e) {
-      throw new DriverCreationError("Driver class is built for higher Java version: " + driverClassName, e);
+      return (WebDriver) constructor.invokeExact(capabilities);
+    } catch (Throwable e) {
+      throw new DriverCreationError(e);
     }
   }
 
-  public WebDriver createDriver(Capabilities capabilities) {
-    return callConstructor(getDriverClass(), capabilities);
-  }
+  /**
+   * @return a supplier of the constructor handle of type (Capabilities)WebDriver,
+   * or a supplier that throws the resolution error
+   */
+  private static Supplier<MethodHandle> resolve(String driverClassName) {
+    Class<? extends WebDriver> driverClass;
+    try {
+      driverClass = Class.forName(driverClassName).asSubclass(WebDriver.class);
+    } catch (ClassNotFoundException | NoClassDefFoundError e) {
+      return failure(() -> new DriverCreationError("Driver class not found: " + driverClassName, e));
+    } catch (UnsupportedClassVersionError e) {
+      return failure(() -> new DriverCreationError("Driver class is built for higher Java version: " + driverClassName, e));
+    }
 
-  private WebDriver callConstructor(Class<? extends WebDriver> from, Capabilities capabilities) {
+    MethodHandle constructor;
     try {
-      Constructor<? extends WebDriver> constructor = from.getConstructor(Capabilities.class);
-      return constructor.newInstance(capabilities);
+      constructor = LOOKUP.findConstructor(driverClass, MethodType.methodType(void.class, Capabilities.class));
     } catch (NoSuchMethodException e) {
       try {
-        return from.newInstance();
-      } catch (InstantiationException | IllegalAccessException e1) {
-        throw new DriverCreationError(e);
+        // a driver that does not accept capabilities, they are ignored
+        constructor = MethodHandles.dropArguments(
+          LOOKUP.findConstructor(driverClass, MethodType.methodType(void.class)), 0, Capabilities.class);
+      } catch (NoSuchMethodException | IllegalAccessException e1) {
+        return failure(() -> new DriverCreationError(e));
       }
-    } catch (InvocationTargetException | InstantiationException | IllegalAccessException e) {
-      throw new DriverCreationError(e);
+    } catch (IllegalAccessException e) {
+      return failure(() -> new DriverCreationError(e));
     }
+    MethodHandle handle = constructor.asType(CONSTRUCTOR_TYPE);
+    return () -> handle;
+  }
+
+  private static Supplier<MethodHandle> failure(Supplier<DriverCreationError> error) {
+    return () -> {
+      throw error.get();
+    };
   }
 }
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2020 Alexei Barantsev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ru.stqa.selenium.factory;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Defines how many times a pool tries to create a driver, and how long it waits between the attempts.
+ * The delay doubles with each attempt up to the maximum, and is randomized between a half and a full delay,
+ * so that the pools that failed at the same moment do not retry at the same moment too.
+ */
+public final class RetryPolicy {
+
+  /**
+   * A single attempt, it is the default.
+   */
+  public static final RetryPolicy NONE = new RetryPolicy(1, Duration.ZERO, Duration.ZERO);
+
+  private final int maxAttempts;
+  private final Duration initialBackoff;
+  private final Duration maxBackoff;
+
+  /**
+   * @param maxAttempts The number of attempts, including the first one
+   * @param initialBackoff The delay before the second attempt
+   * @param maxBackoff The maximum delay between the attempts
+   */
+  public RetryPolicy(int maxAttempts, Duration initialBackoff, Duration maxBackoff) {
+    if (maxAttempts < 1 || initialBackoff.isNegative() || maxBackoff.compareTo(initialBackoff) < 0) {
+      throw new IllegalArgumentException(String.format(
+        "Inconsistent retry policy: maxAttempts=%d, initialBackoff=%s, maxBackoff=%s",
+        maxAttempts, initialBackoff, maxBackoff));
+    }
+    this.maxAttempts = maxAttempts;
+    this.initialBackoff = initialBackoff;
+    this.maxBackoff = maxBackoff;
+  }
+
+  public int getMaxAttempts() {
+    return maxAttempts;
+  }
+
+  /**
+   * Returns the delay after the given failed attempt.
+   * @param attempt The number of the failed attempt, starting from 1
+   */
+  Duration backoff(int attempt) {
+    long millis = initialBackoff.toMillis();
+    for (int i = 1; i < attempt && millis < maxBackoff.toMillis(); i++) {
+      millis *= 2;
+    }
+    millis = Math.min(millis, maxBackoff.toMillis());
+    if (millis == 0) {
+      return Duration.ZERO;
+    }
+    return Duration.ofMillis(millis / 2 + ThreadLocalRandom.current().nextLong(millis / 2 + 1));
+  }
+}
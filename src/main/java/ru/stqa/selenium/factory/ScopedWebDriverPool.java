@@ -0,0 +1,244 @@
+/*
+ * Copyright 2020 Alexei Barantsev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ru.stqa.selenium.factory;
+
+import org.openqa.selenium.Capabilities;
+import org.openqa.selenium.WebDriver;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * A pool that allows a single managed instance of WebDriver to exist for each {@link Scope},
+ * a logical test context that is opened and closed explicitly, rather than for each thread.
+ * It suits test runners that run tests in many short-lived (e.g. virtual) threads, or move a test between threads.
+ *
+ * A driver is obtained from the scope directly, or from the pool inside {@link Scope#call(Supplier)}
+ * that binds the scope to the current thread for the duration of the call. Closing the scope dismisses its driver.
+ *
+ * Scopes use locks instead of monitors, so a virtual thread that waits for a browser to start
+ * does not pin its carrier thread.
+ */
+public final class ScopedWebDriverPool extends AbstractWebDriverPool {
+
+  private final ThreadLocal<Scope> boundScope = new ThreadLocal<>();
+  private final Set<Scope> scopes = ConcurrentHashMap.newKeySet();
+  private final Map<DriverIdentity, Scope> driverToScope = new ConcurrentHashMap<>();
+
+  public ScopedWebDriverPool() {
+    Runtime.getRuntime().addShutdownHook(new Thread(ScopedWebDriverPool.this::dismissAllOnShutdown));
+  }
+
+  public Scope openScope() {
+    Scope scope = new Scope();
+    scopes.add(scope);
+    return scope;
+  }
+
+  /**
+   * Returns the driver of the scope bound to the current thread by {@link Scope#call(Supplier)}.
+   * Throws IllegalStateException if no scope is bound.
+   */
+  @Override
+  public WebDriver getDriver(URL hub, Capabilities capabilities) {
+    return currentScope().getDriver(hub, capabilities);
+  }
+
+  @Override
+  public CompletableFuture<WebDriver> getDriverAsync(URL hub, Capabilities capabilities, Executor executor) {
+    Scope scope = currentScope();
+    return CompletableFuture.supplyAsync(() -> scope.getDriver(hub, capabilities), executor);
+  }
+
+  private Scope currentScope() {
+    Scope scope = boundScope.get();
+    if (scope == null) {
+      throw new IllegalStateException("No scope is bound to the current thread");
+    }
+    return scope;
+  }
+
+  @Override
+  public void dismissDriver(WebDriver driver) {
+    Scope scope = driverToScope.get(new DriverIdentity(driver));
+    if (scope == null) {
+      throw new Error("The driver is not owned by the factory: " + driver);
+    }
+    scope.dismiss(driver);
+  }
+
+  @Override
+  public void dismissAll() {
+    List<WebDriver> dismissed = new ArrayList<>();
+    for (Scope scope : scopes) {
+      WebDriver driver = scope.takeDriver();
+      if (driver != null) {
+        dismissed.add(driver);
+      }
+    }
+    quitAll(dismissed);
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return driverToScope.isEmpty();
+  }
+
+  /**
+   * A logical test context that owns at most one driver at a time. The scope can be used from any thread.
+   */
+  public final class Scope implements AutoCloseable {
+
+    private final ReentrantLock lock = new ReentrantLock();
+    // guarded by lock
+    private WebDriver driver;
+    private DriverKey key;
+    private boolean closed;
+
+    private Scope() {
+    }
+
+    public WebDriver getDriver(Capabilities capabilities) {
+      return getDriver(null, capabilities);
+    }
+
+    /**
+     * Returns the driver of the scope, if it has the same capabilities and is alive,
+     * or replaces it with a new one.
+     */
+    public WebDriver getDriver(URL hub, Capabilities capabilities) {
+      DriverKey newKey = createKey(capabilities, hub);
+      WebDriver replaced = null;
+      lock.lock();
+      try {
+        if (closed) {
+          throw new IllegalStateException("The scope is closed");
+        }
+        if (driver != null) {
+          if (!newKey.equals(key)) {
+            // A different flavour of WebDriver is required
+            getMetrics().driverRecreatedOnKeyChange(newKey);
+            replaced = takeDriverLocked();
+
+          } else if (!isAlive(driver)) {
+            getMetrics().driverRecreatedAsDead(newKey);
+            replaced = takeDriverLocked();
+
+          } else {
+            getMetrics().driverReused(newKey);
+            return driver;
+          }
+        }
+        WebDriver created = newDriver(newKey, hub, capabilities);
+        driver = created;
+        key = newKey;
+        driverToScope.put(new DriverIdentity(created), this);
+        return created;
+      } finally {
+        lock.unlock();
+        if (replaced != null) {
+          quit(replaced);
+        }
+      }
+    }
+
+    /**
+     * Binds the scope to the current thread for the duration of the action, so that
+     * {@link ScopedWebDriverPool#getDriver(URL, Capabilities)} returns the driver of this scope.
+     */
+    public <T> T call(Supplier<T> action) {
+      Scope previous = boundScope.get();
+      boundScope.set(this);
+      try {
+        return action.get();
+      } finally {
+        if (previous == null) {
+          boundScope.remove();
+        } else {
+          boundScope.set(previous);
+        }
+      }
+    }
+
+    public void run(Runnable action) {
+      call(() -> {
+        action.run();
+        return null;
+      });
+    }
+
+    /**
+     * Dismisses the driver of the scope, the scope can not be used anymore.
+     */
+    @Override
+    public void close() {
+      WebDriver dismissed;
+      lock.lock();
+      try {
+        closed = true;
+        dismissed = takeDriverLocked();
+      } finally {
+        lock.unlock();
+      }
+      scopes.remove(this);
+      if (dismissed != null) {
+        quit(dismissed);
+      }
+    }
+
+    void dismiss(WebDriver candidate) {
+      lock.lock();
+      try {
+        if (driver != candidate) {
+          // already replaced or dismissed
+          return;
+        }
+        takeDriverLocked();
+      } finally {
+        lock.unlock();
+      }
+      quit(candidate);
+    }
+
+    WebDriver takeDriver() {
+      lock.lock();
+      try {
+        return takeDriverLocked();
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    private WebDriver takeDriverLocked() {
+      WebDriver taken = driver;
+      if (taken != null) {
+        driverToScope.remove(new DriverIdentity(taken));
+        driver = null;
+        key = null;
+      }
+      return taken;
+    }
+  }
+}
@@ -20,32 +20,38 @@ import org.openqa.selenium.Capabilities;
 import org.openqa.selenium.WebDriver;
 
 import java.net.URL;
+import java.util.Collections;
 
 public final class SingleWebDriverPool extends AbstractWebDriverPool {
 
-  private String key;
+  private DriverKey key;
   private WebDriver driver;
 
   public SingleWebDriverPool() {
-    Runtime.getRuntime().addShutdownHook(new Thread(SingleWebDriverPool.this::dismissAll));
+    Runtime.getRuntime().addShutdownHook(new Thread(SingleWebDriverPool.this::dismissAllOnShutdown));
   }
 
   @Override
   public WebDriver getDriver(URL hub, Capabilities capabilities) {
-    String newKey = createKey(capabilities, hub);
+    DriverKey newKey = createKey(capabilities, hub);
     if (driver == null) {
-      createNewDriver(hub, capabilities);
+      createNewDriver(newKey, hub, capabilities);
 
     } else {
       if (!newKey.equals(key)) {
         // A different flavour of WebDriver is required
+        getMetrics().driverRecreatedOnKeyChange(newKey);
         dismissDriver();
-        createNewDriver(hub, capabilities);
+        createNewDriver(newKey, hub, capabilities);
 
       } else {
         // Check the browser is alive
-        if (! alivenessChecker.isAlive(driver)) {
-          createNewDriver(hub, capabilities);
+        if (! isAlive(driver)) {
+          getMetrics().driverRecreatedAsDead(newKey);
+          discardDriver();
+          createNewDriver(newKey, hub, capabilities);
+        } else {
+          getMetrics().driverReused(newKey);
         }
       }
     }
@@ -63,7 +69,12 @@ public final class SingleWebDriverPool extends AbstractWebDriverPool {
 
   @Override
   public void dismissAll() {
-    dismissDriver();
+    if (driver != null) {
+      WebDriver dismissed = driver;
+      driver = null;
+      key = null;
+      quitAll(Collections.singletonList(dismissed));
+    }
   }
 
   @Override
@@ -71,20 +82,24 @@ public final class SingleWebDriverPool extends AbstractWebDriverPool {
     return driver == null;
   }
 
-  private void createNewDriver(URL hub, Capabilities capabilities) {
-    String newKey = createKey(capabilities, hub);
-    driver = newDriver(hub, capabilities);
+  private void createNewDriver(DriverKey newKey, URL hub, Capabilities capabilities) {
+    driver = newDriver(newKey, hub, capabilities);
     key = newKey;
   }
 
   private void dismissDriver() {
     if (driver != null) {
-      try {
-        driver.quit();
-      } finally {
-        driver = null;
-        key = null;
-      }
+      WebDriver dismissed = driver;
+      driver = null;
+      key = null;
+      quit(dismissed);
     }
   }
+
+  private void discardDriver() {
+    WebDriver discarded = driver;
+    driver = null;
+    key = null;
+    discard(discarded);
+  }
 }
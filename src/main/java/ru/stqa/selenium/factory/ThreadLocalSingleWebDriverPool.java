@@ -20,106 +20,306 @@ import org.openqa.selenium.Capabilities;
 import org.openqa.selenium.WebDriver;
 
 import java.net.URL;
-import java.util.*;
-import java.util.stream.Collectors;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Drivers are created, checked and quit outside of any pool-wide lock, so a slow browser launch in one thread
+ * does not block other threads. The bookkeeping maps are concurrent, and removal of a driver from the maps
+ * is the "claim" that allows exactly one caller to quit it. The drivers are tracked by identity with a
+ * {@link ManagedDriver} handle that holds the key, the owner thread and the recycling state of a driver.
+ *
+ * A driver requested with {@link #getDriverAsync(URL, Capabilities)} is bound to the thread that made the request,
+ * not to the thread that launched the browser. The requesting thread should not ask for another driver
+ * until the future is complete.
+ *
+ * The drivers of the finished threads are dismissed by a scan of all the drivers, which is done
+ * at most once per {@link #setFinishedThreadsCheckInterval(Duration) interval} on a pool call,
+ * so that a call does not cost O(live drivers). The health check scans them too.
+ *
+ * If a driver is to be retired according to the {@link RecyclingPolicy}, it is handed out for the last time,
+ * and the replacement is launched in background to be handed out on the next request.
+ *
+ * If {@link #setMaxParkedDrivers(int) hand-off} is on, a driver is not quit when its thread requests
+ * other capabilities or finishes, it is reset and parked to be taken over by a thread that requests
+ * the same capabilities. The {@link #setDriverResetter(DriverResetter) resetter} of the pool is used,
+ * or {@link DefaultDriverResetter} if there is none, and a driver that fails to reset is quit.
+ */
 public final class ThreadLocalSingleWebDriverPool extends AbstractWebDriverPool {
 
-  private final ThreadLocal<WebDriver> tlDriver = new ThreadLocal<>();
+  private static final DriverResetter HAND_OFF_RESETTER = new DefaultDriverResetter();
+
+  private final Map<Thread, ManagedDriver> threadToDriver = new ConcurrentHashMap<>();
+  private final Map<DriverIdentity, ManagedDriver> drivers = new ConcurrentHashMap<>();
+  // the parked drivers are in the drivers map too, with no owner; the least recently parked one comes first
+  private final Deque<ManagedDriver> parked = new ConcurrentLinkedDeque<>();
+  private volatile int maxParkedDrivers;
 
-  private final Map<WebDriver, String> driverToKeyMap = Collections.synchronizedMap(new HashMap<>());
-  private final Map<WebDriver, Thread> driverToThread = Collections.synchronizedMap(new HashMap<>());
+  private volatile long finishedThreadsCheckIntervalNanos = TimeUnit.SECONDS.toNanos(1);
+  private final AtomicLong nextFinishedThreadsCheck = new AtomicLong(System.nanoTime());
 
   public ThreadLocalSingleWebDriverPool() {
-    Runtime.getRuntime().addShutdownHook(new Thread(ThreadLocalSingleWebDriverPool.this::dismissAll));
+    Runtime.getRuntime().addShutdownHook(new Thread(ThreadLocalSingleWebDriverPool.this::dismissAllOnShutdown));
   }
 
   @Override
-  public synchronized WebDriver getDriver(URL hub, Capabilities capabilities) {
-    dismissDriversInFinishedThreads();
-    String newKey = createKey(capabilities, hub);
-    if (tlDriver.get() == null) {
-      createNewDriver(capabilities, hub);
+  public WebDriver getDriver(URL hub, Capabilities capabilities) {
+    return getDriver(Thread.currentThread(), hub, capabilities);
+  }
+
+  @Override
+  public CompletableFuture<WebDriver> getDriverAsync(URL hub, Capabilities capabilities, Executor executor) {
+    Thread owner = Thread.currentThread();
+    return CompletableFuture.supplyAsync(() -> getDriver(owner, hub, capabilities), executor);
+  }
+
+  /**
+   * Sets the minimal interval between the scans for the drivers of finished threads on pool calls.
+   * Zero means a scan on each call.
+   */
+  public void setFinishedThreadsCheckInterval(Duration interval) {
+    finishedThreadsCheckIntervalNanos = interval.toNanos();
+    nextFinishedThreadsCheck.set(System.nanoTime());
+  }
+
+  /**
+   * Turns on the hand-off of drivers between threads: a driver that its thread does not need anymore is parked,
+   * and a thread that requests a driver takes over a parked one with the same capabilities instead of
+   * launching a new browser. This reduces the number of launches in the suites that run tests for different
+   * browsers in parallel. If there are too many parked drivers, the least recently parked one is quit.
+   * @param maxParkedDrivers The maximum number of parked drivers, zero (default) turns the hand-off off
+   */
+  public void setMaxParkedDrivers(int maxParkedDrivers) {
+    if (maxParkedDrivers < 0) {
+      throw new IllegalArgumentException("Inconsistent limit: maxParkedDrivers=" + maxParkedDrivers);
+    }
+    this.maxParkedDrivers = maxParkedDrivers;
+    trimParked();
+  }
+
+  private WebDriver getDriver(Thread owner, URL hub, Capabilities capabilities) {
+    dismissDriversInFinishedThreadsIfDue();
+    DriverKey newKey = createKey(capabilities, hub);
+    ManagedDriver managed = threadToDriver.get(owner);
+    if (managed == null || !drivers.containsKey(managed.getIdentity())) {
+      // there is no driver, or it was dismissed
+      return takeOverOrCreate(owner, newKey, capabilities, hub, false);
 
     } else {
-      String key = driverToKeyMap.get(tlDriver.get());
-      if (key == null) {
-        // The driver was dismissed
-        createNewDriver(capabilities, hub);
+      if (!newKey.equals(managed.getKey())) {
+        // A different flavour of WebDriver is required
+        release(managed);
+        return takeOverOrCreate(owner, newKey, capabilities, hub, true);
 
       } else {
-        if (!newKey.equals(key)) {
-          // A different flavour of WebDriver is required
-          dismissDriver(tlDriver.get());
-          createNewDriver(capabilities, hub);
-
-        } else {
-          // Check the browser is alive
-          if (! alivenessChecker.isAlive(tlDriver.get())) {
-            dismissDriver(tlDriver.get());
-            createNewDriver(capabilities, hub);
-          }
+        CompletableFuture<WebDriver> replacement = managed.takeReplacement();
+        if (replacement != null) {
+          // The driver is retired, the replacement was launched in background
+          quitDriver(managed);
+          return adoptReplacement(owner, newKey, replacement, capabilities, hub);
+        }
+        // Check the browser is alive
+        if (! isAlive(managed.getDriver())) {
+          getMetrics().driverRecreatedAsDead(newKey);
+          quitDriver(managed);
+          return createNewDriver(owner, newKey, capabilities, hub);
         }
       }
     }
-    return tlDriver.get();
+    if (shouldRetire(managed)) {
+      managed.offerReplacement(newDriverAsync(newKey, hub, capabilities));
+      if (!drivers.containsKey(managed.getIdentity())) {
+        // the driver was dismissed concurrently
+        discardReplacement(managed);
+      }
+    }
+    getMetrics().driverReused(newKey);
+    return managed.getDriver();
+  }
+
+  private WebDriver adoptReplacement(Thread owner, DriverKey key, CompletableFuture<WebDriver> replacement,
+                                     Capabilities capabilities, URL hub) {
+    WebDriver driver;
+    try {
+      driver = replacement.join();
+    } catch (CompletionException e) {
+      // the background launch failed, let's try again and let the caller see the error
+      return createNewDriver(owner, key, capabilities, hub);
+    }
+    register(owner, key, driver);
+    return driver;
   }
 
   @Override
-  public synchronized void dismissDriver(WebDriver driver) {
-    dismissDriversInFinishedThreads();
-    if (driverToKeyMap.get(driver) == null) {
+  public void dismissDriver(WebDriver driver) {
+    dismissDriversInFinishedThreadsIfDue();
+    ManagedDriver managed = drivers.get(new DriverIdentity(driver));
+    if (managed == null) {
       throw new Error("The driver is not owned by the factory: " + driver);
     }
-    if (driver != tlDriver.get()) {
+    if (managed.getOwner() != Thread.currentThread()) {
       throw new Error("The driver does not belong to the current thread: " + driver);
     }
-    try {
-      driver.quit();
-    } finally {
-      driverToKeyMap.remove(driver);
-      driverToThread.remove(driver);
-      tlDriver.remove();
+    quitDriver(managed);
+  }
+
+  private void quitDriver(ManagedDriver managed) {
+    if (forget(managed)) {
+      quit(managed.getDriver());
+    }
+  }
+
+  private void dismissDriversInFinishedThreadsIfDue() {
+    long now = System.nanoTime();
+    long next = nextFinishedThreadsCheck.get();
+    // only one of the concurrent callers does the scan
+    if (now - next >= 0 && nextFinishedThreadsCheck.compareAndSet(next, now + finishedThreadsCheckIntervalNanos)) {
+      dismissDriversInFinishedThreads();
     }
   }
 
-  private synchronized void dismissDriversInFinishedThreads() {
-    List<WebDriver> stale = driverToThread.entrySet().stream()
-      .filter((entry) -> !entry.getValue().isAlive())
-      .map(Map.Entry::getKey).collect(Collectors.toList());
+  private void dismissDriversInFinishedThreads() {
+    for (ManagedDriver managed : drivers.values()) {
+      Thread owner = (Thread) managed.getOwner();
+      if (owner != null && !owner.isAlive()) {
+        release(managed);
+      }
+    }
+  }
+
+  /**
+   * Parks the driver the owner does not need anymore, or quits it if the hand-off is off.
+   */
+  private void release(ManagedDriver managed) {
+    if (maxParkedDrivers == 0 || managed.hasReplacement()) {
+      // a retired driver is not worth parking
+      quitDriver(managed);
+      return;
+    }
+    // the next owner should not see cookies, storage and windows of the previous one
+    if (!reset(managed.getDriver(), HAND_OFF_RESETTER)) {
+      quitDriver(managed);
+      return;
+    }
+    threadToDriver.remove(managed.getOwner(), managed);
+    ManagedDriver unowned = new ManagedDriver(managed, null);
+    // the replacement is the claim, a concurrent dismissal wins otherwise
+    if (drivers.replace(managed.getIdentity(), managed, unowned)) {
+      parked.addLast(unowned);
+      trimParked();
+    }
+  }
 
-    for (WebDriver driver : stale) {
-      try {
-        driver.quit();
-      } finally {
-        driverToKeyMap.remove(driver);
-        driverToThread.remove(driver);
+  private WebDriver takeOverOrCreate(Thread owner, DriverKey key, Capabilities capabilities, URL hub,
+                                     boolean keyChanged) {
+    for (ManagedDriver candidate : parked) {
+      if (!candidate.getKey().equals(key) || !parked.removeFirstOccurrence(candidate)) {
+        continue;
       }
+      ManagedDriver managed = new ManagedDriver(candidate, owner);
+      if (!drivers.replace(candidate.getIdentity(), candidate, managed)) {
+        // the driver was dismissed meanwhile
+        continue;
+      }
+      if (isAlive(managed.getDriver())) {
+        threadToDriver.put(owner, managed);
+        getMetrics().driverReused(key);
+        return managed.getDriver();
+      }
+      getMetrics().driverRecreatedAsDead(key);
+      quitDriver(managed);
+    }
+    if (keyChanged) {
+      getMetrics().driverRecreatedOnKeyChange(key);
+    }
+    return createNewDriver(owner, key, capabilities, hub);
+  }
+
+  private void trimParked() {
+    while (parked.size() > maxParkedDrivers) {
+      ManagedDriver evicted = parked.pollFirst();
+      if (evicted == null) {
+        return;
+      }
+      quitDriver(evicted);
     }
   }
 
   @Override
-  public synchronized void dismissAll() {
-    for (WebDriver driver : new HashSet<>(driverToKeyMap.keySet())) {
-      try {
-        driver.quit();
-      } finally {
-        driverToKeyMap.remove(driver);
-        driverToThread.remove(driver);
+  protected void checkHealth() {
+    // the drivers of the running threads may be in use, only the orphaned and the parked ones are idle
+    dismissDriversInFinishedThreads();
+    Map<WebDriver, ManagedDriver> idle = new IdentityHashMap<>();
+    for (ManagedDriver managed : parked) {
+      idle.put(managed.getDriver(), managed);
+    }
+    for (WebDriver driver : findDead(idle.keySet())) {
+      // a driver taken over meanwhile has another handle, and it is not quit
+      quitDriver(idle.get(driver));
+    }
+  }
+
+  @Override
+  public void dismissAll() {
+    List<WebDriver> dismissed = new ArrayList<>();
+    for (ManagedDriver managed : drivers.values()) {
+      if (forget(managed)) {
+        dismissed.add(managed.getDriver());
       }
     }
+    quitAll(dismissed);
   }
 
   @Override
-  public synchronized boolean isEmpty() {
-    return driverToKeyMap.isEmpty();
+  public boolean isEmpty() {
+    return drivers.isEmpty();
+  }
+
+  private WebDriver createNewDriver(Thread owner, DriverKey newKey, Capabilities capabilities, URL hub) {
+    WebDriver driver = newDriver(newKey, hub, capabilities);
+    register(owner, newKey, driver);
+    return driver;
   }
 
-  private synchronized void createNewDriver(Capabilities capabilities, URL hub) {
-    String newKey = createKey(capabilities, hub);
-    WebDriver driver = newDriver(hub, capabilities);
-    driverToKeyMap.put(driver, newKey);
-    driverToThread.put(driver, Thread.currentThread());
-    tlDriver.set(driver);
+  private void register(Thread owner, DriverKey key, WebDriver driver) {
+    ManagedDriver managed = new ManagedDriver(driver, key, owner);
+    drivers.put(managed.getIdentity(), managed);
+    threadToDriver.put(owner, managed);
+  }
+
+  /**
+   * Removes the driver from the bookkeeping maps.
+   * @return true if the driver was owned by the pool, and the caller is responsible to quit it
+   */
+  private boolean forget(ManagedDriver managed) {
+    if (managed.getOwner() != null) {
+      threadToDriver.remove(managed.getOwner(), managed);
+    } else {
+      parked.removeFirstOccurrence(managed);
+    }
+    if (!drivers.remove(managed.getIdentity(), managed)) {
+      return false;
+    }
+    discardReplacement(managed);
+    return true;
+  }
+
+  private void discardReplacement(ManagedDriver managed) {
+    CompletableFuture<WebDriver> replacement = managed.takeReplacement();
+    if (replacement != null) {
+      // nobody is going to adopt it
+      replacement.thenAccept(this::quit);
+    }
   }
 }
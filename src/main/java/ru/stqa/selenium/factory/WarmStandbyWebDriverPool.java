@@ -0,0 +1,307 @@
+/*
+ * Copyright 2020 Alexei Barantsev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ru.stqa.selenium.factory;
+
+import org.openqa.selenium.Capabilities;
+import org.openqa.selenium.ImmutableCapabilities;
+import org.openqa.selenium.WebDriver;
+
+import java.net.URL;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletionException;
+
+/**
+ * A pool that keeps a number of pre-launched idle drivers for each requested set of capabilities
+ * and launches the replacements in background, so that a request to the pool usually does not have
+ * to wait for a browser to start.
+ *
+ * Each call to {@link #getDriver(URL, Capabilities)} hands out a driver that is not shared with anyone else,
+ * like {@link LooseWebDriverPool} does.
+ */
+public final class WarmStandbyWebDriverPool extends AbstractWebDriverPool {
+
+  /**
+   * Standby limits for a set of capabilities.
+   */
+  public static final class Limits {
+    private final int minIdle;
+    private final int maxIdle;
+    private final int maxTotal;
+
+    /**
+     * @param minIdle The number of idle drivers the pool tries to keep ready
+     * @param maxIdle The maximum number of idle drivers
+     * @param maxTotal The maximum number of drivers, idle and handed out, that the pool launches in background
+     */
+    public Limits(int minIdle, int maxIdle, int maxTotal) {
+      if (minIdle < 0 || maxIdle < minIdle || maxTotal < maxIdle) {
+        throw new IllegalArgumentException(
+          String.format("Inconsistent limits: minIdle=%d, maxIdle=%d, maxTotal=%d", minIdle, maxIdle, maxTotal));
+      }
+      this.minIdle = minIdle;
+      this.maxIdle = maxIdle;
+      this.maxTotal = maxTotal;
+    }
+  }
+
+  private final Map<DriverKey, Limits> limits = new ConcurrentHashMap<>();
+  private volatile Limits defaultLimits = new Limits(1, 1, Integer.MAX_VALUE);
+
+  private final Map<DriverKey, Standby> standbys = new ConcurrentHashMap<>();
+  private final Map<DriverIdentity, Standby> driverToStandby = new ConcurrentHashMap<>();
+
+  public WarmStandbyWebDriverPool() {
+    Runtime.getRuntime().addShutdownHook(new Thread(WarmStandbyWebDriverPool.this::dismissAllOnShutdown));
+  }
+
+  public void setDefaultLimits(Limits defaultLimits) {
+    this.defaultLimits = defaultLimits;
+  }
+
+  public void setLimits(Capabilities capabilities, Limits keyLimits) {
+    setLimits(null, capabilities, keyLimits);
+  }
+
+  public void setLimits(URL hub, Capabilities capabilities, Limits keyLimits) {
+    limits.put(createKey(capabilities, hub), keyLimits);
+  }
+
+  /**
+   * Starts launching idle local drivers with the given capabilities in background.
+   * @param capabilities The desired driver capabilities
+   */
+  public void prewarm(Capabilities capabilities) {
+    prewarm(null, capabilities);
+  }
+
+  /**
+   * Starts launching idle remote drivers with the given capabilities in background.
+   * @param hub The Selenium Server Hub address
+   * @param capabilities The desired driver capabilities
+   */
+  public void prewarm(URL hub, Capabilities capabilities) {
+    standbyFor(hub, capabilities).refill();
+  }
+
+  @Override
+  public WebDriver getDriver(URL hub, Capabilities capabilities) {
+    Standby standby = standbyFor(hub, capabilities);
+    WebDriver driver = standby.take();
+    if (driver == null) {
+      driver = standby.launchNow();
+    }
+    driverToStandby.put(new DriverIdentity(driver), standby);
+    standby.refill();
+    return driver;
+  }
+
+  @Override
+  public void dismissDriver(WebDriver driver) {
+    Standby standby = driverToStandby.remove(new DriverIdentity(driver));
+    if (standby == null) {
+      throw new Error("The driver is not owned by the factory: " + driver);
+    }
+    standby.forget();
+    standby.refill();
+    quit(driver);
+  }
+
+  @Override
+  public void dismissAll() {
+    List<WebDriver> drivers = new ArrayList<>();
+    for (DriverIdentity identity : driverToStandby.keySet()) {
+      if (driverToStandby.remove(identity) != null) {
+        drivers.add(identity.getDriver());
+      }
+    }
+    for (Standby standby : new ArrayList<>(standbys.values())) {
+      standbys.remove(standby.key, standby);
+      drivers.addAll(standby.close());
+    }
+    quitAll(drivers);
+  }
+
+  @Override
+  protected void checkHealth() {
+    for (Standby standby : standbys.values()) {
+      standby.evictDeadIdle();
+    }
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return driverToStandby.isEmpty() && standbys.values().stream().allMatch(Standby::hasNoIdle);
+  }
+
+  int countIdle(URL hub, Capabilities capabilities) {
+    Standby standby = standbys.get(createKey(capabilities, hub));
+    return standby == null ? 0 : standby.countIdle();
+  }
+
+  private Standby standbyFor(URL hub, Capabilities capabilities) {
+    return standbys.computeIfAbsent(createKey(capabilities, hub), key -> new Standby(key, hub, capabilities));
+  }
+
+  private final class Standby {
+    private final DriverKey key;
+    private final URL hub;
+    private final Capabilities capabilities;
+
+    private final Deque<WebDriver> idle = new ArrayDeque<>();
+    private int total; // idle, handed out and being launched
+    private int launching;
+    private boolean closed;
+
+    Standby(DriverKey key, URL hub, Capabilities capabilities) {
+      this.key = key;
+      this.hub = hub;
+      // the requested capabilities can be modified by the client later
+      this.capabilities = ImmutableCapabilities.copyOf(capabilities);
+    }
+
+    private Limits limits() {
+      return limits.getOrDefault(key, defaultLimits);
+    }
+
+    WebDriver take() {
+      WebDriver driver;
+      while ((driver = pollIdle()) != null) {
+        if (isAlive(driver)) {
+          getMetrics().driverReused(key);
+          return driver;
+        }
+        getMetrics().driverRecreatedAsDead(key);
+        forget();
+        quit(driver);
+      }
+      return null;
+    }
+
+    private synchronized WebDriver pollIdle() {
+      return idle.pollFirst();
+    }
+
+    WebDriver launchNow() {
+      synchronized (this) {
+        total++;
+      }
+      try {
+        return newDriver(key, hub, capabilities);
+      } catch (RuntimeException | Error e) {
+        forget();
+        throw e;
+      }
+    }
+
+    synchronized void forget() {
+      total--;
+    }
+
+    synchronized void refill() {
+      Limits limits = limits();
+      while (!closed && idle.size() + launching < limits.minIdle && total < limits.maxTotal) {
+        total++;
+        launching++;
+        launchInBackground();
+      }
+    }
+
+    private void launchInBackground() {
+      newDriverAsync(key, hub, capabilities).whenComplete((driver, error) -> {
+        if (error == null) {
+          launched(driver);
+        } else {
+          launchFailed(error instanceof CompletionException ? error.getCause() : error);
+        }
+      });
+    }
+
+    /**
+     * The failure is counted in the pool metrics by the launch itself.
+     */
+    private void launchFailed(Throwable error) {
+      // the next request for this key will fail or succeed on its own, no retry storm here
+      synchronized (this) {
+        launching--;
+        total--;
+      }
+      if (!(error instanceof RuntimeException)) {
+        // not a failed launch, something is wrong with the JVM, it should not go unnoticed
+        Thread thread = Thread.currentThread();
+        thread.getUncaughtExceptionHandler().uncaughtException(thread, error);
+      }
+    }
+
+    private void launched(WebDriver driver) {
+      boolean accepted;
+      synchronized (this) {
+        launching--;
+        accepted = !closed && idle.size() < limits().maxIdle;
+        if (accepted) {
+          idle.addLast(driver);
+        } else {
+          total--;
+        }
+      }
+      if (!accepted) {
+        quit(driver);
+      }
+    }
+
+    void evictDeadIdle() {
+      List<WebDriver> candidates;
+      synchronized (this) {
+        candidates = new ArrayList<>(idle);
+      }
+      for (WebDriver driver : findDead(candidates)) {
+        boolean evicted;
+        synchronized (this) {
+          // the driver could be handed out while it was checked
+          evicted = DriverIdentity.remove(idle, driver);
+          if (evicted) {
+            total--;
+          }
+        }
+        if (evicted) {
+          getMetrics().driverRecreatedAsDead(key);
+          quit(driver);
+        }
+      }
+      refill();
+    }
+
+    synchronized int countIdle() {
+      return idle.size();
+    }
+
+    synchronized boolean hasNoIdle() {
+      return idle.isEmpty();
+    }
+
+    synchronized List<WebDriver> close() {
+      closed = true;
+      List<WebDriver> drivers = new ArrayList<>(idle);
+      idle.clear();
+      return drivers;
+    }
+  }
+}
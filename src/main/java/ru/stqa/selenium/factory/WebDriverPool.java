@@ -21,17 +21,28 @@ import org.openqa.selenium.WebDriver;
 import org.openqa.selenium.remote.DesiredCapabilities;
 
 import java.net.URL;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 /**
  * An utility that helps to create, reuse and dismiss WebDriver instances.
  *
  * The WebDriver instances created by the pool and stored in the pool are called "managed instances".
  *
- * There are three ways to manage instances, three classes that implement WebDriverPool interface:
+ * There are several ways to manage instances, several classes that implement WebDriverPool interface:
  * <ul>
  * <li>{@link SingleWebDriverPool} allows a single managed instance of WebDriver to exist at any given moment,</li>
+ * <li>{@link KeyedSingleWebDriverPool} allows a single managed instance of WebDriver to exist for each set
+ * of capabilities, and quits the least recently used one if there are too many of them,</li>
  * <li>{@link ThreadLocalSingleWebDriverPool} allows a single managed instance of WebDriver to exist for each thread,</li>
- * <li>{@link LooseWebDriverPool} does not impose any restrictions, it creates a new managed instance on each request</li>
+ * <li>{@link LooseWebDriverPool} does not impose any restrictions, it creates a new managed instance on each request,</li>
+ * <li>{@link WarmStandbyWebDriverPool} hands out a new managed instance on each request too, but keeps a number
+ * of pre-launched idle instances for each set of capabilities</li>
+ * <li>{@link BoundedWebDriverPool} limits the number of managed instances, they are borrowed and released back
+ * to the pool to be reused by any thread</li>
+ * <li>{@link ScopedWebDriverPool} allows a single managed instance of WebDriver to exist for each explicitly
+ * opened scope, a logical test context that is not bound to a thread</li>
  * </ul>
  *
  * See documentation at https://github.com/barancev/webdriver-factory/
@@ -78,6 +89,32 @@ public interface WebDriverPool {
    */
   WebDriver getDriver(URL hub, Capabilities capabilities);
 
+  /**
+   * Starts obtaining a managed local instance of WebDriver with the given capabilities in background.
+   * @param capabilities The desired driver capabilities
+   */
+  default CompletableFuture<WebDriver> getDriverAsync(Capabilities capabilities) {
+    return getDriverAsync(null, capabilities);
+  }
+
+  /**
+   * Starts obtaining a managed remote instance of WebDriver with the given capabilities in background,
+   * using the pool's own executor.
+   * @param hub The Selenium Server Hub address
+   * @param capabilities The desired driver capabilities
+   */
+  CompletableFuture<WebDriver> getDriverAsync(URL hub, Capabilities capabilities);
+
+  /**
+   * Starts obtaining a managed remote instance of WebDriver with the given capabilities in background.
+   * @param hub The Selenium Server Hub address
+   * @param capabilities The desired driver capabilities
+   * @param executor The executor to launch the browser in
+   */
+  default CompletableFuture<WebDriver> getDriverAsync(URL hub, Capabilities capabilities, Executor executor) {
+    return CompletableFuture.supplyAsync(() -> getDriver(hub, capabilities), executor);
+  }
+
   /**
    * Quits the driver and removes it from the pool, if it is a managed instance.
    * Throws an Error on attempt to dismiss an unmanaged instance of WebDriver.
@@ -86,7 +123,10 @@ public interface WebDriverPool {
   void dismissDriver(WebDriver driver);
 
   /**
-   * Quits all the managed drivers and empties the pool.
+   * Quits all the managed drivers in parallel and empties the pool.
+   * Waits for the drivers to quit no longer than the dismissal timeout.
+   * @throws DriverDismissalError if some drivers failed to quit or did not quit in time,
+   * the pool is emptied anyway
    */
   void dismissAll();
 
@@ -95,8 +135,89 @@ public interface WebDriverPool {
    */
   boolean isEmpty();
 
+  /**
+   * Waits for the dismissed drivers that are quitting in background to finish.
+   * @param timeout The maximum time to wait
+   * @return true if all the drivers have quit, false if the timeout elapsed
+   */
+  boolean awaitTermination(Duration timeout) throws InterruptedException;
+
   void setDriverAlivenessChecker(DriverAlivenessChecker alivenessChecker);
 
+  /**
+   * Sets a canonicalizer that the capabilities pass through before they are compared and handed to a provider,
+   * so that the equivalent requests reuse the same driver. If it is null the capabilities are used as is,
+   * for the providers that depend on the concrete type of the options.
+   */
+  void setCapabilitiesCanonicalizer(CapabilitiesCanonicalizer canonicalizer);
+
+  /**
+   * Sets a receiver of the pool metrics, for example {@link InMemoryPoolMetrics}.
+   */
+  void setPoolMetrics(PoolMetrics metrics);
+
+  /**
+   * Turns on a periodic background check of the idle managed drivers: the dead ones are evicted and quit,
+   * and the drivers of the finished threads are dismissed. Idle drivers of a warm pool are replaced.
+   * The drivers in use are not checked in background, they are checked when they are requested again.
+   * The pools that have idle drivers ({@link ThreadLocalSingleWebDriverPool}, {@link WarmStandbyWebDriverPool}
+   * and {@link BoundedWebDriverPool}) check them, the other pools ignore this setting.
+   * @param interval The delay between the checks, null (default) turns the check off
+   */
+  void setHealthCheckInterval(Duration interval);
+
+  /**
+   * Sets a resetter that cleans up a driver before it is handed to another client,
+   * for example {@link DefaultDriverResetter}. It is used by {@link BoundedWebDriverPool} on release.
+   * If the resetter is null (default) drivers are reused as is.
+   */
+  void setDriverResetter(DriverResetter driverResetter);
+
+  /**
+   * Sets the default policy to replace long-lived drivers with fresh ones, the replacements are launched
+   * in background. It is used by {@link ThreadLocalSingleWebDriverPool} on reuse of a driver and
+   * by {@link BoundedWebDriverPool} on release. {@link RecyclingPolicy#NEVER} is the default.
+   */
+  void setRecyclingPolicy(RecyclingPolicy policy);
+
   void setLocalDriverProvider(LocalDriverProvider localDriverProvider);
   void setRemoteDriverProvider(RemoteDriverProvider remoteDriverProvider);
+
+  void setCreationExecutor(Executor creationExecutor);
+
+  /**
+   * Sets the maximum time to wait for a driver to be created. A stuck attempt is interrupted, and the driver
+   * is quit if it is created later anyway. If the timeout is null (default) the pool waits as long as it takes.
+   */
+  void setCreationTimeout(Duration creationTimeout);
+
+  /**
+   * Sets the policy to retry failed or timed out attempts to create a driver, {@link RetryPolicy#NONE} by default.
+   */
+  void setRetryPolicy(RetryPolicy retryPolicy);
+
+  /**
+   * Sets the limits on simultaneous browser launches, they apply to the background launches too.
+   * If the throttle is null (default) all the browsers are launched at once. A throttle can be shared by several pools.
+   */
+  void setLaunchThrottle(LaunchThrottle launchThrottle);
+
+  /**
+   * Sets an executor to quit the dismissed drivers in background, so that dismissal does not block the caller.
+   * {@link #dismissAll()} uses this executor too, if it is set. A bounded executor is recommended.
+   * If the executor is null (default) drivers are quit by the caller thread.
+   */
+  void setQuitExecutor(Executor quitExecutor);
+
+  /**
+   * Sets the maximum time {@link #dismissAll()} waits for the drivers to quit, one minute by default.
+   * The shutdown hook of the pool uses this timeout too.
+   */
+  void setDismissalTimeout(Duration dismissalTimeout);
+
+  /**
+   * Sets a killer for the drivers that did not quit in time on {@link #dismissAll()},
+   * for example {@link DriverServiceKiller}. If the killer is null (default) such drivers are abandoned.
+   */
+  void setDriverKiller(DriverKiller driverKiller);
 }
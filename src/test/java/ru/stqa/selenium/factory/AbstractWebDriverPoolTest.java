@@ -19,14 +19,32 @@ package ru.stqa.selenium.factory;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.openqa.selenium.Capabilities;
+import org.openqa.selenium.ImmutableCapabilities;
+import org.openqa.selenium.Platform;
 import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
 import org.openqa.selenium.firefox.FirefoxOptions;
 import org.openqa.selenium.htmlunit.HtmlUnitDriver;
 import org.openqa.selenium.remote.BrowserType;
 import org.openqa.selenium.remote.DesiredCapabilities;
 
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -125,6 +143,100 @@ public class AbstractWebDriverPoolTest {
     assertTrue(factory.isEmpty());
   }
 
+  @Test
+  public void testCanObtainADriverAsynchronously() throws Exception {
+    CompletableFuture<WebDriver> future = factory.getDriverAsync(fakeCapabilities);
+    WebDriver driver = future.get(5, TimeUnit.SECONDS);
+    assertTrue(driver instanceof FakeWebDriver);
+    assertFalse(factory.isEmpty());
+
+    assertSame(driver, factory.getDriver(fakeCapabilities));
+    factory.dismissDriver(driver);
+    assertTrue(factory.isEmpty());
+  }
+
+  @Test
+  public void testCanObtainADriverAsynchronouslyWithACustomExecutor() throws Exception {
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      WebDriver driver = factory.getDriverAsync(null, fakeCapabilities, executor).get(5, TimeUnit.SECONDS);
+      assertTrue(driver instanceof FakeWebDriver);
+      factory.dismissDriver(driver);
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void testAsynchronousCreationErrorsAreReportedByTheFuture() {
+    ExecutionException thrown = assertThrows(ExecutionException.class,
+      () -> factory.getDriverAsync(new DesiredCapabilities("BADNAME", "", Platform.ANY)).get(5, TimeUnit.SECONDS));
+    assertTrue(thrown.getCause() instanceof DriverCreationError);
+  }
+
+  @Test
+  public void testCanQuitDriversInBackground() throws InterruptedException {
+    CountDownLatch quitAllowed = new CountDownLatch(1);
+    factory.setLocalDriverProvider(capabilities -> new FakeWebDriver(capabilities) {
+      @Override
+      public void quit() {
+        try {
+          quitAllowed.await();
+        } catch (InterruptedException e) {
+          throw new RuntimeException(e);
+        }
+        super.quit();
+      }
+    });
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    factory.setQuitExecutor(executor);
+    try {
+      FakeWebDriver driver = (FakeWebDriver) factory.getDriver(fakeCapabilities);
+      factory.dismissDriver(driver);
+      assertTrue(factory.isEmpty());
+      assertTrue(driver.isActive());
+      assertFalse(factory.awaitTermination(Duration.ofMillis(100)));
+
+      quitAllowed.countDown();
+      assertTrue(factory.awaitTermination(Duration.ofSeconds(5)));
+      assertFalse(driver.isActive());
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void testCollectsPoolMetrics() throws Exception {
+    InMemoryPoolMetrics metrics = new InMemoryPoolMetrics();
+    factory.setPoolMetrics(metrics);
+
+    WebDriver driver = factory.getDriver(fakeCapabilities);
+    assertSame(driver, factory.getDriver(fakeCapabilities));
+    driver.quit();
+    driver = factory.getDriver(fakeCapabilities);
+    driver = factory.getDriver(new DesiredCapabilities("FAKE", "1", Platform.ANY));
+    assertThrows(DriverCreationError.class, () -> factory.getDriver("BADNAME"));
+
+    assertEquals(3, metrics.getCreatedDrivers());
+    assertEquals(1, metrics.getFailedCreations());
+    assertEquals(1, metrics.getReuseHits());
+    assertEquals(1, metrics.getDeadDriverRecreations());
+    assertEquals(2, metrics.getKeyChangeRecreations());
+    assertEquals(2, metrics.getCreationLatencyByKey().size());
+    assertEquals(2, metrics.getAlivenessCheckLatency().getCount());
+    // the dead driver is not quit, the single pool just discards it
+    assertEquals(2, metrics.getQuitDrivers());
+    assertEquals(1, metrics.getDiscardedDrivers());
+    assertEquals(0, metrics.getLiveDrivers());
+
+    ObjectName name = metrics.registerMBean("test");
+    try {
+      assertEquals(3L, ManagementFactory.getPlatformMBeanServer().getAttribute(name, "CreatedDrivers"));
+    } finally {
+      ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+    }
+  }
+
   @Test
   public void testCanSetCustomAlivenessChecker() {
     factory.setDriverAlivenessChecker(driver -> false);
@@ -134,4 +246,271 @@ public class AbstractWebDriverPoolTest {
 
     assertNotSame(driver2, driver1);
   }
+
+  @Test
+  public void testCanCacheAlivenessChecks() {
+    AtomicInteger checks = new AtomicInteger();
+    CachingDriverAlivenessChecker checker = new CachingDriverAlivenessChecker(driver -> {
+      checks.incrementAndGet();
+      return ((FakeWebDriver) driver).isActive();
+    }, Duration.ofMinutes(1));
+    factory.setDriverAlivenessChecker(checker);
+
+    WebDriver driver = factory.getDriver(fakeCapabilities);
+    assertSame(driver, factory.getDriver(fakeCapabilities));
+    assertSame(driver, factory.getDriver(fakeCapabilities));
+    assertEquals(1, checks.get());
+
+    driver.quit();
+    checker.invalidate(driver);
+    assertNotSame(driver, factory.getDriver(fakeCapabilities));
+    assertEquals(2, checks.get());
+  }
+
+  @Test
+  public void testCachingAlivenessCheckerComparesDriversByIdentity() {
+    CachingDriverAlivenessChecker checker = new CachingDriverAlivenessChecker(
+      driver -> ((FakeWebDriver) driver).isActive(), Duration.ofMinutes(1));
+    FakeWebDriver alive = new EqualFakeWebDriver(fakeCapabilities);
+    FakeWebDriver dead = new EqualFakeWebDriver(fakeCapabilities);
+    dead.quit();
+
+    assertTrue(checker.isAlive(alive));
+    assertFalse(checker.isAlive(dead));
+  }
+
+  @Test
+  public void testRetriesFailedDriverCreation() {
+    AtomicInteger attempts = new AtomicInteger();
+    factory.setLocalDriverProvider(capabilities -> {
+      if (attempts.incrementAndGet() < 3) {
+        throw new WebDriverException("Cannot start a browser");
+      }
+      return new FakeWebDriver(capabilities);
+    });
+    factory.setRetryPolicy(new RetryPolicy(3, Duration.ofMillis(10), Duration.ofMillis(20)));
+
+    WebDriver driver = factory.getDriver(fakeCapabilities);
+    assertTrue(((FakeWebDriver) driver).isActive());
+    assertEquals(3, attempts.get());
+  }
+
+  @Test
+  public void testReportsAllFailedAttempts() {
+    factory.setLocalDriverProvider(capabilities -> {
+      throw new WebDriverException("Cannot start a browser");
+    });
+    factory.setRetryPolicy(new RetryPolicy(3, Duration.ZERO, Duration.ZERO));
+
+    DriverCreationError thrown = assertThrows(DriverCreationError.class, () -> factory.getDriver(fakeCapabilities));
+    assertTrue(thrown.getCause() instanceof WebDriverException);
+    assertEquals(2, thrown.getSuppressed().length);
+  }
+
+  @Test
+  public void testAbandonsDriverCreationOnTimeout() throws InterruptedException {
+    CountDownLatch launchAllowed = new CountDownLatch(1);
+    List<FakeWebDriver> launched = new CopyOnWriteArrayList<>();
+    factory.setLocalDriverProvider(capabilities -> {
+      try {
+        launchAllowed.await();
+      } catch (InterruptedException e) {
+        // ignore the interruption to simulate a provider that does not respond to it
+      }
+      FakeWebDriver driver = new FakeWebDriver(capabilities);
+      launched.add(driver);
+      return driver;
+    });
+    factory.setCreationTimeout(Duration.ofMillis(100));
+
+    assertThrows(DriverCreationError.class, () -> factory.getDriver(fakeCapabilities));
+    assertTrue(factory.isEmpty());
+
+    // the late driver is quit as soon as it is created
+    launchAllowed.countDown();
+    long deadline = System.currentTimeMillis() + 5000;
+    while ((launched.isEmpty() || launched.get(0).isActive()) && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertEquals(1, launched.size());
+    assertFalse(launched.get(0).isActive());
+  }
+
+  @Test
+  public void testAbandonedLaunchGivesBackItsThrottlePermit() throws Exception {
+    CountDownLatch stuckLaunchAllowed = new CountDownLatch(1);
+    AtomicInteger launches = new AtomicInteger();
+    factory.setLocalDriverProvider(capabilities -> {
+      if (launches.incrementAndGet() == 1) {
+        while (true) {
+          try {
+            stuckLaunchAllowed.await();
+            break;
+          } catch (InterruptedException e) {
+            // ignore the interruption to simulate a provider that does not respond to it
+          }
+        }
+      }
+      return new FakeWebDriver(capabilities);
+    });
+    factory.setLaunchThrottle(new LaunchThrottle(1));
+    factory.setCreationTimeout(Duration.ofMillis(200));
+
+    try {
+      assertThrows(DriverCreationError.class, () -> factory.getDriver(fakeCapabilities));
+      // the stuck launch does not hold the only permit
+      WebDriver driver = CompletableFuture.supplyAsync(() -> factory.getDriver(fakeCapabilities))
+        .get(5, TimeUnit.SECONDS);
+      assertTrue(((FakeWebDriver) driver).isActive());
+    } finally {
+      stuckLaunchAllowed.countDown();
+    }
+  }
+
+  @Test
+  public void testLimitsSimultaneousLaunches() throws InterruptedException {
+    // the launches are parallel, so the pool must be thread-safe
+    WebDriverPool pool = new LooseWebDriverPool();
+    AtomicInteger launching = new AtomicInteger();
+    AtomicInteger maxLaunching = new AtomicInteger();
+    pool.setLocalDriverProvider(capabilities -> {
+      maxLaunching.accumulateAndGet(launching.incrementAndGet(), Math::max);
+      try {
+        Thread.sleep(50);
+      } catch (InterruptedException e) {
+        throw new DriverCreationError(e);
+      } finally {
+        launching.decrementAndGet();
+      }
+      return new FakeWebDriver(capabilities);
+    });
+    pool.setLaunchThrottle(new LaunchThrottle(4, Collections.singletonMap("FAKE", 2), false));
+
+    List<Thread> threads = new ArrayList<>();
+    List<WebDriver> drivers = Collections.synchronizedList(new ArrayList<>());
+    for (int d = 0; d < 8; d++) {
+      threads.add(new Thread(() -> drivers.add(pool.getDriver(fakeCapabilities))));
+    }
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertEquals(threads.size(), drivers.size());
+    assertEquals(2, maxLaunching.get());
+  }
+
+  @Test
+  public void testTimeInTheLaunchQueueDoesNotCountAgainstTheCreationTimeout() throws InterruptedException {
+    // the launches are parallel, so the pool must be thread-safe
+    WebDriverPool pool = new LooseWebDriverPool();
+    pool.setLocalDriverProvider(capabilities -> {
+      try {
+        Thread.sleep(150);
+      } catch (InterruptedException e) {
+        throw new DriverCreationError(e);
+      }
+      return new FakeWebDriver(capabilities);
+    });
+    pool.setLaunchThrottle(new LaunchThrottle(1));
+    pool.setCreationTimeout(Duration.ofMillis(1000));
+
+    List<Thread> threads = new ArrayList<>();
+    List<WebDriver> drivers = Collections.synchronizedList(new ArrayList<>());
+    for (int d = 0; d < 10; d++) {
+      threads.add(new Thread(() -> drivers.add(pool.getDriver(fakeCapabilities))));
+    }
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    // the last launch waits in the queue longer than the timeout, but it is not stuck
+    assertEquals(threads.size(), drivers.size());
+  }
+
+  @Test
+  public void testAdaptiveThrottleRaisesTheLimitWhileLaunchesAreFast() {
+    factory.setLocalDriverProvider(capabilities -> {
+      try {
+        Thread.sleep(20);
+      } catch (InterruptedException e) {
+        throw new DriverCreationError(e);
+      }
+      return new FakeWebDriver(capabilities);
+    });
+    LaunchThrottle throttle = new LaunchThrottle(3, Collections.emptyMap(), true);
+    factory.setLaunchThrottle(throttle);
+    assertEquals(1, throttle.getCurrentLimit());
+
+    for (int i = 0; i < 5; i++) {
+      factory.dismissDriver(factory.getDriver(fakeCapabilities));
+    }
+    assertEquals(3, throttle.getCurrentLimit());
+  }
+
+  @Test
+  public void testEquivalentCapabilitiesShareADriver() {
+    DesiredCapabilities withDefaults = new DesiredCapabilities("FAKE", "", Platform.ANY);
+    withDefaults.setCapability("fake:options", new HashMap<>());
+    withDefaults.setCapability("fake:args", new ArrayList<>());
+
+    List<Capabilities> provided = new ArrayList<>();
+    factory.setLocalDriverProvider(capabilities -> {
+      provided.add(capabilities);
+      return new FakeWebDriver(capabilities);
+    });
+
+    WebDriver driver = factory.getDriver(withDefaults);
+    assertSame(driver, factory.getDriver(fakeCapabilities));
+    // the provider gets the canonical form too
+    assertEquals(fakeCapabilities.asMap(), provided.get(0).asMap());
+  }
+
+  @Test
+  public void testImmutableCapabilitiesAreCanonicalizedOnce() {
+    CapabilitiesCanonicalizer canonicalizer = new CapabilitiesCanonicalizer();
+    AtomicInteger hashed = new AtomicInteger();
+    Capabilities immutable = new ImmutableCapabilities(fakeCapabilities) {
+      @Override
+      public int hashCode() {
+        hashed.incrementAndGet();
+        return super.hashCode();
+      }
+    };
+
+    Capabilities canonical = canonicalizer.canonicalize(immutable);
+    assertSame(canonical, canonicalizer.canonicalize(immutable));
+    // the memo compares by identity
+    assertEquals(0, hashed.get());
+    // and the canonical form is not canonicalized again
+    assertSame(canonical, canonicalizer.canonicalize(canonical));
+  }
+
+  @Test
+  public void testCanTurnOffCapabilitiesCanonicalization() {
+    factory.setCapabilitiesCanonicalizer(null);
+    DesiredCapabilities withDefaults = new DesiredCapabilities("FAKE", "", Platform.ANY);
+
+    WebDriver driver = factory.getDriver(fakeCapabilities);
+    assertNotSame(driver, factory.getDriver(withDefaults));
+  }
+
+  private static class EqualFakeWebDriver extends FakeWebDriver {
+    EqualFakeWebDriver(Capabilities capabilities) {
+      super(capabilities);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof EqualFakeWebDriver;
+    }
+
+    @Override
+    public int hashCode() {
+      return 0;
+    }
+  }
 }
@@ -0,0 +1,297 @@
+/*
+ * Copyright 2020 Alexei Barantsev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ru.stqa.selenium.factory;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openqa.selenium.Capabilities;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.remote.DesiredCapabilities;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BoundedWebDriverPoolTest {
+
+  private BoundedWebDriverPool factory;
+  private DesiredCapabilities fakeCapabilities;
+  private DesiredCapabilities otherCapabilities;
+
+  @BeforeEach
+  public void setUp() {
+    fakeCapabilities = new DesiredCapabilities();
+    fakeCapabilities.setBrowserName("FAKE");
+    otherCapabilities = new DesiredCapabilities();
+    otherCapabilities.setBrowserName("OTHER");
+
+    factory = new BoundedWebDriverPool(2, 1);
+    factory.setLocalDriverProvider(FakeWebDriver::new);
+  }
+
+  private boolean isActive(WebDriver driver) {
+    return ((FakeWebDriver) driver).isActive();
+  }
+
+  @Test
+  public void testCanBorrowReleaseAndDismissADriver() throws Exception {
+    WebDriver driver = factory.borrow(fakeCapabilities, Duration.ofSeconds(1));
+    assertTrue(isActive(driver));
+    assertFalse(factory.isEmpty());
+
+    factory.release(driver);
+    assertTrue(isActive(driver));
+    assertFalse(factory.isEmpty());
+
+    factory.dismissDriver(driver);
+    assertFalse(isActive(driver));
+    assertTrue(factory.isEmpty());
+  }
+
+  @Test
+  public void testReusesAReleasedDriverInAnotherThread() throws Exception {
+    WebDriver driver = factory.borrow(fakeCapabilities, Duration.ofSeconds(1));
+    factory.release(driver);
+
+    WebDriver driver2 = CompletableFuture.supplyAsync(() -> factory.getDriver(fakeCapabilities))
+      .get(5, TimeUnit.SECONDS);
+    assertSame(driver, driver2);
+  }
+
+  @Test
+  public void testRecreatesADeadIdleDriver() throws Exception {
+    WebDriver driver = factory.borrow(fakeCapabilities, Duration.ofSeconds(1));
+    factory.release(driver);
+    driver.quit();
+
+    WebDriver driver2 = factory.borrow(fakeCapabilities, Duration.ofSeconds(1));
+    assertNotSame(driver, driver2);
+    assertTrue(isActive(driver2));
+  }
+
+  @Test
+  public void testWaitsForTheKeyLimitAndTimesOut() throws Exception {
+    factory.borrow(fakeCapabilities, Duration.ofSeconds(1));
+
+    assertThrows(TimeoutException.class, () -> factory.borrow(fakeCapabilities, Duration.ofMillis(100)));
+    // another key is not limited by this one
+    assertNotNull(factory.borrow(otherCapabilities, Duration.ofMillis(100)));
+  }
+
+  @Test
+  public void testWaitingRequestGetsTheReleasedDriver() throws Exception {
+    WebDriver driver = factory.borrow(fakeCapabilities, Duration.ofSeconds(1));
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<WebDriver> waiting = executor.submit(() -> factory.getDriver(fakeCapabilities));
+      Thread.sleep(100);
+      assertFalse(waiting.isDone());
+
+      factory.release(driver);
+      assertSame(driver, waiting.get(5, TimeUnit.SECONDS));
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void testDoesNotRelyOnDriverEquality() throws Exception {
+    factory.setLocalDriverProvider(EqualFakeWebDriver::new);
+    DesiredCapabilities thirdCapabilities = new DesiredCapabilities();
+    thirdCapabilities.setBrowserName("THIRD");
+
+    WebDriver driver = factory.borrow(fakeCapabilities, Duration.ofSeconds(1));
+    WebDriver other = factory.borrow(otherCapabilities, Duration.ofSeconds(1));
+    factory.release(driver);
+    factory.release(other);
+
+    assertSame(other, factory.borrow(otherCapabilities, Duration.ofSeconds(1)));
+    // the idle driver is evicted, not the one that is in use and equal to it
+    WebDriver third = factory.borrow(thirdCapabilities, Duration.ofSeconds(1));
+    assertTrue(isActive(third));
+    assertTrue(isActive(other));
+    assertFalse(isActive(driver));
+  }
+
+  @Test
+  public void testEvictsAnIdleDriverWithOtherCapabilitiesIfTheTotalLimitIsReached() throws Exception {
+    factory = new BoundedWebDriverPool(1);
+    factory.setLocalDriverProvider(FakeWebDriver::new);
+
+    WebDriver driver = factory.borrow(fakeCapabilities, Duration.ofSeconds(1));
+    factory.release(driver);
+
+    WebDriver other = factory.borrow(otherCapabilities, Duration.ofSeconds(1));
+    assertTrue(isActive(other));
+    assertFalse(isActive(driver));
+  }
+
+  @Test
+  public void testServesWaitingRequestsInOrder() throws Exception {
+    factory = new BoundedWebDriverPool(1);
+    factory.setLocalDriverProvider(FakeWebDriver::new);
+    WebDriver driver = factory.borrow(fakeCapabilities, Duration.ofSeconds(1));
+
+    List<Integer> served = new CopyOnWriteArrayList<>();
+    List<Thread> requests = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      int order = i;
+      Thread request = new Thread(() -> {
+        WebDriver borrowed = factory.getDriver(fakeCapabilities);
+        served.add(order);
+        factory.release(borrowed);
+      });
+      request.start();
+      requests.add(request);
+      Thread.sleep(100);
+    }
+    factory.release(driver);
+    for (Thread request : requests) {
+      request.join(5000);
+    }
+
+    assertEquals(Arrays.asList(0, 1, 2), served);
+  }
+
+  @Test
+  public void testDismissAllQuitsBorrowedAndIdleDrivers() throws Exception {
+    WebDriver driver = factory.borrow(fakeCapabilities, Duration.ofSeconds(1));
+    WebDriver other = factory.borrow(otherCapabilities, Duration.ofSeconds(1));
+    factory.release(other);
+
+    factory.dismissAll();
+    assertFalse(isActive(driver));
+    assertFalse(isActive(other));
+    assertTrue(factory.isEmpty());
+  }
+
+  @Test
+  public void testShouldReleaseBorrowedDriversOnly() {
+    assertThrows(Error.class, () -> factory.release(new FakeWebDriver(fakeCapabilities)));
+  }
+
+  @Test
+  public void testResetsADriverOnRelease() throws Exception {
+    List<WebDriver> reset = new CopyOnWriteArrayList<>();
+    factory.setDriverResetter(reset::add);
+
+    WebDriver driver = factory.borrow(fakeCapabilities, Duration.ofSeconds(1));
+    factory.release(driver);
+    assertEquals(Arrays.asList(driver), reset);
+    assertSame(driver, factory.borrow(fakeCapabilities, Duration.ofSeconds(1)));
+  }
+
+  @Test
+  public void testDismissesADriverThatCannotBeReset() throws Exception {
+    factory.setDriverResetter(driver -> {
+      throw new WebDriverException("Cannot reset");
+    });
+
+    WebDriver driver = factory.borrow(fakeCapabilities, Duration.ofSeconds(1));
+    factory.release(driver);
+    assertFalse(isActive(driver));
+    assertTrue(factory.isEmpty());
+  }
+
+  @Test
+  public void testDefaultResetterNavigatesToABlankPage() throws Exception {
+    List<String> actions = new CopyOnWriteArrayList<>();
+    factory.setLocalDriverProvider(capabilities -> new FakeWebDriver(capabilities) {
+      @Override
+      public void get(String url) {
+        actions.add("get " + url);
+      }
+
+      @Override
+      public Options manage() {
+        return (Options) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] {Options.class},
+          (proxy, method, args) -> {
+            actions.add(method.getName());
+            return null;
+          });
+      }
+    });
+    factory.setDriverResetter(new DefaultDriverResetter());
+
+    WebDriver driver = factory.borrow(fakeCapabilities, Duration.ofSeconds(5));
+    driver.get("http://example.com/");
+    actions.clear();
+    factory.release(driver);
+
+    assertEquals(Arrays.asList("deleteAllCookies", "get about:blank"), actions);
+  }
+
+
+  @Test
+  public void testRetiresAnOldDriverOnReleaseAndReplacesItInBackground() throws Exception {
+    factory.setRecyclingPolicy(fakeCapabilities, new RecyclingPolicy(Integer.MAX_VALUE, Duration.ZERO));
+
+    WebDriver driver = factory.borrow(fakeCapabilities, Duration.ofSeconds(1));
+    factory.release(driver);
+    assertFalse(isActive(driver));
+
+    WebDriver driver2 = factory.borrow(fakeCapabilities, Duration.ofSeconds(5));
+    assertNotSame(driver, driver2);
+    assertTrue(isActive(driver2));
+  }
+
+  @Test
+  public void testRetiresADriverAfterMaxReuses() throws Exception {
+    factory.setRecyclingPolicy(fakeCapabilities, new RecyclingPolicy(1, null));
+
+    WebDriver driver = factory.borrow(fakeCapabilities, Duration.ofSeconds(1));
+    factory.release(driver);
+    // the first hand-out is not a reuse
+    assertTrue(isActive(driver));
+
+    assertSame(driver, factory.borrow(fakeCapabilities, Duration.ofSeconds(1)));
+    factory.release(driver);
+    assertFalse(isActive(driver));
+
+    WebDriver driver2 = factory.borrow(fakeCapabilities, Duration.ofSeconds(5));
+    assertNotSame(driver, driver2);
+    assertTrue(isActive(driver2));
+  }
+
+  private static class EqualFakeWebDriver extends FakeWebDriver {
+    EqualFakeWebDriver(Capabilities capabilities) {
+      super(capabilities);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof EqualFakeWebDriver;
+    }
+
+    @Override
+    public int hashCode() {
+      return 0;
+    }
+  }
+}
@@ -31,6 +31,8 @@ import org.openqa.selenium.firefox.FirefoxDriver;
 import org.openqa.selenium.firefox.FirefoxOptions;
 import org.openqa.selenium.ie.InternetExplorerDriver;
 import org.openqa.selenium.ie.InternetExplorerOptions;
+import org.openqa.selenium.remote.BrowserType;
+import org.openqa.selenium.remote.DesiredCapabilities;
 import org.openqa.selenium.safari.SafariDriver;
 import org.openqa.selenium.safari.SafariOptions;
 
@@ -84,6 +86,32 @@ public class DefaultLocalDriverProviderTest {
     assertTrue(driver instanceof SafariDriver);
   }
 
+  @Test
+  void canInstantiateADriverDiscoveredWithServiceLoader() {
+    DesiredCapabilities capabilities = new DesiredCapabilities();
+    capabilities.setBrowserName("FAKE_SPI");
+    driver = provider.createDriver(capabilities);
+    assertTrue(driver instanceof FakeWebDriver);
+  }
+
+  @Test
+  void canInstantiateADriverRegisteredAtRuntime() {
+    provider.getRegistry().register("FAKE", FakeWebDriver::new);
+    DesiredCapabilities capabilities = new DesiredCapabilities();
+    capabilities.setBrowserName("FAKE");
+    driver = provider.createDriver(capabilities);
+    assertTrue(driver instanceof FakeWebDriver);
+  }
+
+  @Test
+  void registeredCreatorTakesPrecedenceOverTheStandardOne() {
+    provider.getRegistry().register(BrowserType.HTMLUNIT, FakeWebDriver::new);
+    DesiredCapabilities capabilities = new DesiredCapabilities();
+    capabilities.setBrowserName(BrowserType.HTMLUNIT);
+    driver = provider.createDriver(capabilities);
+    assertTrue(driver instanceof FakeWebDriver);
+  }
+
   @AfterEach
   void fin() {
     if (driver != null) {
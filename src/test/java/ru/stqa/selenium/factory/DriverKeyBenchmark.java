@@ -0,0 +1,121 @@
+/*
+ * Copyright 2020 Alexei Barantsev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ru.stqa.selenium.factory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openqa.selenium.MutableCapabilities;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link DriverKey} with the former string keys built from {@code Capabilities.toString()}
+ * on a pool lookup: a key is created for the requested capabilities and compared with the key of the pooled driver.
+ * The pooled capabilities are built separately and share no strings or maps with the requested ones,
+ * as it is in a real pool, so that the comparison can't take a shortcut on identical references.
+ * The pool benchmark measures the production path, with the canonicalization.
+ *
+ * Run with {@code mvn -Pbenchmarks verify -Dbenchmark=ru.stqa.selenium.factory.DriverKeyBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DriverKeyBenchmark {
+
+  @Param({"0", "100", "2000"})
+  private int extensionSizeKb;
+
+  private URL hub;
+  private MutableCapabilities requested;
+  private String pooledStringKey;
+  private DriverKey pooledDriverKey;
+  private AbstractWebDriverPool pool;
+  private DriverKey pooledPoolKey;
+
+  @Setup
+  public void setUp() throws MalformedURLException {
+    hub = new URL("http://localhost:4444/wd/hub");
+    pool = new SingleWebDriverPool();
+
+    requested = capabilities();
+    pooledStringKey = stringKey(capabilities());
+    pooledDriverKey = DriverKey.of(capabilities(), hub);
+    pooledPoolKey = pool.createKey(capabilities(), hub);
+  }
+
+  /**
+   * Builds new capabilities each time, with new strings, lists and maps.
+   */
+  private MutableCapabilities capabilities() {
+    byte[] extension = new byte[extensionSizeKb * 1024];
+    new Random(42).nextBytes(extension);
+    Map<String, Object> chromeOptions = new HashMap<>();
+    chromeOptions.put(new String("args"), Arrays.asList(
+      new String("--headless"), new String("--disable-gpu"), new String("--window-size=1920,1080")));
+    chromeOptions.put(new String("extensions"), Arrays.asList(Base64.getEncoder().encodeToString(extension)));
+
+    MutableCapabilities capabilities = new MutableCapabilities();
+    capabilities.setCapability(new String("browserName"), new String("chrome"));
+    capabilities.setCapability(new String("goog:chromeOptions"), chromeOptions);
+    return capabilities;
+  }
+
+  private String stringKey(MutableCapabilities capabilities) {
+    return capabilities.toString() + ":" + hub.toString();
+  }
+
+  @Benchmark
+  public boolean stringKeyLookup() {
+    return stringKey(requested).equals(pooledStringKey);
+  }
+
+  @Benchmark
+  public boolean driverKeyLookup() {
+    return DriverKey.of(requested, hub).equals(pooledDriverKey);
+  }
+
+  @Benchmark
+  public boolean poolKeyLookup() {
+    return pool.createKey(requested, hub).equals(pooledPoolKey);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(DriverKeyBenchmark.class.getSimpleName()).build()).run();
+  }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2014 Alexei Barantsev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ru.stqa.selenium.factory;
+
+import org.junit.jupiter.api.Test;
+import org.openqa.selenium.MutableCapabilities;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DriverKeyTest {
+
+  @Test
+  public void testKeysDoNotDependOnCapabilityOrder() {
+    MutableCapabilities capabilities1 = new MutableCapabilities();
+    capabilities1.setCapability("browserName", "FAKE");
+    capabilities1.setCapability("foo", "bar");
+    MutableCapabilities capabilities2 = new MutableCapabilities();
+    capabilities2.setCapability("foo", "bar");
+    capabilities2.setCapability("browserName", "FAKE");
+
+    assertEquals(DriverKey.of(capabilities1, null), DriverKey.of(capabilities2, null));
+    assertEquals(DriverKey.of(capabilities1, null).hashCode(), DriverKey.of(capabilities2, null).hashCode());
+  }
+
+  @Test
+  public void testKeyIsNotAffectedByLaterModificationOfCapabilities() {
+    MutableCapabilities capabilities = new MutableCapabilities();
+    capabilities.setCapability("browserName", "FAKE");
+    DriverKey key = DriverKey.of(capabilities, null);
+
+    capabilities.setCapability("foo", "bar");
+    assertNotEquals(key, DriverKey.of(capabilities, null));
+  }
+
+  @Test
+  public void testKeysWithDifferentHubsAreDifferent() throws MalformedURLException {
+    MutableCapabilities capabilities = new MutableCapabilities();
+    capabilities.setCapability("browserName", "FAKE");
+
+    assertNotEquals(DriverKey.of(capabilities, null), DriverKey.of(capabilities, new URL("http://localhost/")));
+    assertEquals(DriverKey.of(capabilities, new URL("http://localhost/")),
+                 DriverKey.of(capabilities, new URL("http://localhost/")));
+  }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2014 Alexei Barantsev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ru.stqa.selenium.factory;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.remote.DesiredCapabilities;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class KeyedSingleWebDriverPoolTest {
+
+  private WebDriverPool factory;
+  private DesiredCapabilities fakeCapabilities;
+  private DesiredCapabilities otherCapabilities;
+  private DesiredCapabilities thirdCapabilities;
+
+  @BeforeEach
+  public void setUp() {
+    fakeCapabilities = new DesiredCapabilities();
+    fakeCapabilities.setBrowserName("FAKE");
+    otherCapabilities = new DesiredCapabilities(fakeCapabilities);
+    otherCapabilities.setCapability("foo", "bar");
+    thirdCapabilities = new DesiredCapabilities(fakeCapabilities);
+    thirdCapabilities.setCapability("foo", "baz");
+
+    factory = new KeyedSingleWebDriverPool(2);
+
+    factory.setLocalDriverProvider(FakeWebDriver::new);
+  }
+
+  private boolean isActive(WebDriver driver) {
+    return ((FakeWebDriver) driver).isActive();
+  }
+
+  @Test
+  public void testCanInstantiateAndDismissADriver() {
+    WebDriver driver = factory.getDriver(fakeCapabilities);
+    assertTrue(isActive(driver));
+    assertFalse(factory.isEmpty());
+
+    factory.dismissDriver(driver);
+    assertFalse(isActive(driver));
+    assertTrue(factory.isEmpty());
+  }
+
+  @Test
+  public void testCanDismissAllDrivers() {
+    WebDriver driver = factory.getDriver(fakeCapabilities);
+    WebDriver driver2 = factory.getDriver(otherCapabilities);
+
+    factory.dismissAll();
+    assertFalse(isActive(driver));
+    assertFalse(isActive(driver2));
+    assertTrue(factory.isEmpty());
+  }
+
+  @Test
+  public void testReusesDriversWhenCapabilitiesAlternate() {
+    WebDriver driver = factory.getDriver(fakeCapabilities);
+    WebDriver driver2 = factory.getDriver(otherCapabilities);
+    assertNotSame(driver2, driver);
+
+    assertSame(driver, factory.getDriver(fakeCapabilities));
+    assertSame(driver2, factory.getDriver(otherCapabilities));
+    assertTrue(isActive(driver));
+    assertTrue(isActive(driver2));
+  }
+
+  @Test
+  public void testQuitsTheLeastRecentlyUsedDriverIfThereAreTooMany() {
+    WebDriver driver = factory.getDriver(fakeCapabilities);
+    WebDriver driver2 = factory.getDriver(otherCapabilities);
+    assertSame(driver, factory.getDriver(fakeCapabilities));
+
+    WebDriver driver3 = factory.getDriver(thirdCapabilities);
+    assertTrue(isActive(driver));
+    assertFalse(isActive(driver2));
+    assertTrue(isActive(driver3));
+
+    assertNotSame(driver2, factory.getDriver(otherCapabilities));
+    assertFalse(isActive(driver));
+  }
+
+  @Test
+  public void testShouldRecreateAnInactiveDriver() {
+    WebDriver driver = factory.getDriver(fakeCapabilities);
+    driver.quit();
+
+    WebDriver driver2 = factory.getDriver(fakeCapabilities);
+    assertNotSame(driver2, driver);
+    assertTrue(isActive(driver2));
+  }
+
+  @Test
+  public void testShouldDismissOwnedDriversOnly() {
+    factory.getDriver(fakeCapabilities);
+
+    assertThrows(Error.class, () -> factory.dismissDriver(new FakeWebDriver(fakeCapabilities)));
+  }
+
+  @Test
+  public void testDeadDriverIsNotCountedAsLive() {
+    InMemoryPoolMetrics metrics = new InMemoryPoolMetrics();
+    factory.setPoolMetrics(metrics);
+
+    WebDriver driver = factory.getDriver(fakeCapabilities);
+    driver.quit();
+    WebDriver driver2 = factory.getDriver(fakeCapabilities);
+    assertNotSame(driver, driver2);
+
+    assertEquals(1, metrics.getDiscardedDrivers());
+    assertEquals(1, metrics.getLiveDrivers());
+  }
+}
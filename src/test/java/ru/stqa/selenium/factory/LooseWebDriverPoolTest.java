@@ -19,8 +19,16 @@ package ru.stqa.selenium.factory;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
 import org.openqa.selenium.remote.DesiredCapabilities;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeoutException;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 public class LooseWebDriverPoolTest {
@@ -110,4 +118,103 @@ public class LooseWebDriverPoolTest {
     assertThrows(Error.class, () -> factory.dismissDriver(driver2));
   }
 
+  @Test
+  public void testDismissAllReportsDriversThatFailedToQuit() {
+    factory.setLocalDriverProvider(capabilities -> new FakeWebDriver(capabilities) {
+      @Override
+      public void quit() {
+        throw new WebDriverException("Cannot quit");
+      }
+    });
+    WebDriver driver = factory.getDriver(fakeCapabilities);
+
+    DriverDismissalError thrown = assertThrows(DriverDismissalError.class, () -> factory.dismissAll());
+    assertTrue(thrown.getFailures().get(driver) instanceof WebDriverException);
+    assertTrue(factory.isEmpty());
+  }
+
+  @Test
+  public void testDismissAllKillsDriversThatDidNotQuitInTime() {
+    CountDownLatch quitAllowed = new CountDownLatch(1);
+    factory.setLocalDriverProvider(capabilities -> new FakeWebDriver(capabilities) {
+      @Override
+      public void quit() {
+        try {
+          quitAllowed.await();
+        } catch (InterruptedException e) {
+          throw new RuntimeException(e);
+        }
+        super.quit();
+      }
+    });
+    List<WebDriver> killed = new CopyOnWriteArrayList<>();
+    factory.setDriverKiller(killed::add);
+    factory.setDismissalTimeout(Duration.ofMillis(200));
+    try {
+      WebDriver driver1 = factory.getDriver(fakeCapabilities);
+      WebDriver driver2 = factory.getDriver(fakeCapabilities);
+
+      long start = System.currentTimeMillis();
+      DriverDismissalError thrown = assertThrows(DriverDismissalError.class, () -> factory.dismissAll());
+      assertTrue(System.currentTimeMillis() - start < 2000);
+      assertTrue(thrown.getFailures().get(driver1) instanceof TimeoutException);
+      assertTrue(thrown.getFailures().get(driver2) instanceof TimeoutException);
+      assertEquals(2, killed.size());
+      assertTrue(factory.isEmpty());
+    } finally {
+      quitAllowed.countDown();
+    }
+  }
+
+  @Test
+  public void testConcurrentClientsDoNotLeakDrivers() throws InterruptedException {
+    List<FakeWebDriver> created = new CopyOnWriteArrayList<>();
+    factory.setLocalDriverProvider(capabilities -> {
+      FakeWebDriver driver = new FakeWebDriver(capabilities);
+      created.add(driver);
+      return driver;
+    });
+
+    int threadCount = 16;
+    int driversPerThread = 250;
+    CountDownLatch start = new CountDownLatch(1);
+    List<Throwable> errors = new CopyOnWriteArrayList<>();
+    List<Thread> threads = new ArrayList<>();
+    for (int t = 0; t < threadCount; t++) {
+      threads.add(new Thread(() -> {
+        try {
+          start.await();
+          for (int i = 0; i < driversPerThread; i++) {
+            WebDriver driver = factory.getDriver(fakeCapabilities);
+            if (i % 2 == 0) {
+              try {
+                factory.dismissDriver(driver);
+              } catch (Error e) {
+                // a concurrent dismissAll has taken the driver already
+              }
+            }
+            if (i % 50 == 0) {
+              factory.dismissAll();
+            }
+          }
+        } catch (Throwable e) {
+          errors.add(e);
+        }
+      }));
+    }
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    start.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertTrue(errors.isEmpty(), errors.toString());
+
+    factory.dismissAll();
+    assertTrue(factory.isEmpty());
+    assertEquals(threadCount * driversPerThread, created.size());
+    assertTrue(created.stream().noneMatch(FakeWebDriver::isActive));
+  }
+
 }
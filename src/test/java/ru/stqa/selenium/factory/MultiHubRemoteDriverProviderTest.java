@@ -0,0 +1,160 @@
+/*
+ * Copyright 2020 Alexei Barantsev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ru.stqa.selenium.factory;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openqa.selenium.Capabilities;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.remote.DesiredCapabilities;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MultiHubRemoteDriverProviderTest {
+
+  private URL hub1;
+  private URL hub2;
+  private DesiredCapabilities fakeCapabilities;
+  private List<URL> attempts;
+
+  @BeforeEach
+  public void setUp() throws MalformedURLException {
+    hub1 = new URL("http://hub1:4444/wd/hub");
+    hub2 = new URL("http://hub2:4444/wd/hub");
+    fakeCapabilities = new DesiredCapabilities();
+    fakeCapabilities.setBrowserName("FAKE");
+    attempts = new CopyOnWriteArrayList<>();
+  }
+
+  private MultiHubRemoteDriverProvider provider(URL brokenHub) {
+    return new MultiHubRemoteDriverProvider(Arrays.asList(hub1, hub2), new RemoteDriverProvider() {
+      @Override
+      public WebDriver createDriver(URL hub, Capabilities capabilities) {
+        attempts.add(hub);
+        if (hub.equals(brokenHub)) {
+          throw new WebDriverException("Broken hub");
+        }
+        return new FakeWebDriver(capabilities);
+      }
+    });
+  }
+
+  @Test
+  public void testFailsOverToAnotherHub() {
+    MultiHubRemoteDriverProvider provider = provider(hub1);
+
+    WebDriver driver = provider.createDriver(hub1, fakeCapabilities);
+    assertTrue(driver instanceof FakeWebDriver);
+    assertTrue(attempts.contains(hub2));
+  }
+
+  @Test
+  public void testSpreadsSequentialSessionsOverTheHubs() throws MalformedURLException {
+    URL hub3 = new URL("http://hub3:4444/wd/hub");
+    MultiHubRemoteDriverProvider provider = new MultiHubRemoteDriverProvider(Arrays.asList(hub1, hub2, hub3),
+      new RemoteDriverProvider() {
+        @Override
+        public WebDriver createDriver(URL hub, Capabilities capabilities) {
+          attempts.add(hub);
+          return new FakeWebDriver(capabilities);
+        }
+      });
+
+    for (int i = 0; i < 30; i++) {
+      provider.createDriver(null, fakeCapabilities);
+    }
+    for (URL hub : Arrays.asList(hub1, hub2, hub3)) {
+      assertEquals(10, attempts.stream().filter(hub::equals).count());
+    }
+  }
+
+  @Test
+  public void testSkipsAnUnhealthyHub() {
+    MultiHubRemoteDriverProvider provider = provider(hub1);
+    provider.setHealthPolicy(1, Duration.ofMinutes(1));
+
+    for (int i = 0; i < 5; i++) {
+      provider.createDriver(null, fakeCapabilities);
+    }
+    assertFalse(provider.isHealthy(hub1));
+    assertTrue(provider.isHealthy(hub2));
+    assertEquals(1, attempts.stream().filter(hub1::equals).count());
+  }
+
+  @Test
+  public void testReportsAllFailuresIfNoHubCanCreateASession() {
+    MultiHubRemoteDriverProvider provider = new MultiHubRemoteDriverProvider(Arrays.asList(hub1, hub2),
+      new RemoteDriverProvider() {
+        @Override
+        public WebDriver createDriver(URL hub, Capabilities capabilities) {
+          throw new WebDriverException("Broken hub");
+        }
+      });
+
+    DriverCreationError thrown = assertThrows(DriverCreationError.class,
+      () -> provider.createDriver(null, fakeCapabilities));
+    assertEquals(2, thrown.getSuppressed().length);
+  }
+
+  @Test
+  public void testTriesAnotherHubIfSessionCreationTimesOut() {
+    MultiHubRemoteDriverProvider provider = new MultiHubRemoteDriverProvider(Arrays.asList(hub1, hub2),
+      new RemoteDriverProvider() {
+        @Override
+        public WebDriver createDriver(URL hub, Capabilities capabilities) {
+          if (hub.equals(hub1)) {
+            try {
+              Thread.sleep(1000);
+            } catch (InterruptedException e) {
+              throw new RuntimeException(e);
+            }
+          }
+          return new FakeWebDriver(capabilities);
+        }
+      });
+    provider.setCreationTimeout(Duration.ofMillis(100));
+    provider.setBalancing(MultiHubRemoteDriverProvider.Balancing.LATENCY_WEIGHTED);
+
+    for (int i = 0; i < 3; i++) {
+      assertTrue(provider.createDriver(null, fakeCapabilities) instanceof FakeWebDriver);
+    }
+  }
+
+  @Test
+  public void testDoesNotFailOverIfTheCallerIsInterrupted() throws InterruptedException {
+    MultiHubRemoteDriverProvider provider = provider(hub1);
+
+    Thread.currentThread().interrupt();
+    try {
+      assertThrows(DriverCreationError.class, () -> provider.createDriver(null, fakeCapabilities));
+      assertTrue(Thread.currentThread().isInterrupted());
+    } finally {
+      Thread.interrupted();
+    }
+    // the abandoned attempt on the first hub may still run, but the other hub is not tried
+    Thread.sleep(200);
+    assertFalse(attempts.contains(hub2));
+  }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2020 Alexei Barantsev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ru.stqa.selenium.factory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openqa.selenium.Capabilities;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.remote.DesiredCapabilities;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the overhead of {@link ReflectionBasedInstanceCreator} with a driver that is created instantly,
+ * compared to a direct constructor call and to resolving the constructor by reflection on each call,
+ * as the creator used to do.
+ *
+ * Run with {@code mvn -Pbenchmarks verify -Dbenchmark=ru.stqa.selenium.factory.ReflectionBasedInstanceCreatorBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReflectionBasedInstanceCreatorBenchmark {
+
+  private static final String DRIVER_CLASS = FakeWebDriver.class.getName();
+
+  private DesiredCapabilities capabilities;
+
+  @Setup
+  public void setUp() {
+    capabilities = new DesiredCapabilities();
+    capabilities.setBrowserName("FAKE");
+  }
+
+  @Benchmark
+  public WebDriver directConstructor() {
+    return new FakeWebDriver(capabilities);
+  }
+
+  @Benchmark
+  public WebDriver uncachedReflection() throws ReflectiveOperationException {
+    return Class.forName(DRIVER_CLASS).asSubclass(WebDriver.class)
+      .getConstructor(Capabilities.class).newInstance(capabilities);
+  }
+
+  @Benchmark
+  public WebDriver instanceCreator() {
+    return new ReflectionBasedInstanceCreator(DRIVER_CLASS).createDriver(capabilities);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(ReflectionBasedInstanceCreatorBenchmark.class.getSimpleName()).build()).run();
+  }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2020 Alexei Barantsev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ru.stqa.selenium.factory;
+
+import org.junit.jupiter.api.Test;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.htmlunit.HtmlUnitDriver;
+import org.openqa.selenium.remote.BrowserType;
+import org.openqa.selenium.remote.DesiredCapabilities;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReflectionBasedInstanceCreatorTest {
+
+  @Test
+  public void testCanCreateADriverWithCapabilities() {
+    DesiredCapabilities capabilities = new DesiredCapabilities();
+    capabilities.setBrowserName("FAKE");
+    ReflectionBasedInstanceCreator creator = new ReflectionBasedInstanceCreator(FakeWebDriver.class.getName());
+
+    WebDriver driver = creator.createDriver(capabilities);
+    WebDriver driver2 = creator.createDriver(capabilities);
+    assertTrue(driver instanceof FakeWebDriver);
+    assertNotSame(driver, driver2);
+  }
+
+  @Test
+  public void testCanCreateAStandardDriver() {
+    DesiredCapabilities capabilities = new DesiredCapabilities();
+    capabilities.setBrowserName(BrowserType.HTMLUNIT);
+    WebDriver driver = new ReflectionBasedInstanceCreator(HtmlUnitDriver.class.getName())
+      .createDriver(capabilities);
+    try {
+      assertTrue(driver instanceof HtmlUnitDriver);
+    } finally {
+      driver.quit();
+    }
+  }
+
+  @Test
+  public void testThrowsAnErrorEachTimeIfTheClassIsNotFound() {
+    ReflectionBasedInstanceCreator creator = new ReflectionBasedInstanceCreator("com.example.NoSuchDriver");
+    DesiredCapabilities capabilities = new DesiredCapabilities();
+
+    DriverCreationError thrown = assertThrows(DriverCreationError.class, () -> creator.createDriver(capabilities));
+    assertTrue(thrown.getCause() instanceof ClassNotFoundException);
+    assertThrows(DriverCreationError.class, () -> creator.createDriver(capabilities));
+  }
+}
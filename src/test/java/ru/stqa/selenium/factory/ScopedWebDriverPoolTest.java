@@ -0,0 +1,115 @@
+/*
+ * Copyright 2020 Alexei Barantsev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ru.stqa.selenium.factory;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.remote.DesiredCapabilities;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ScopedWebDriverPoolTest {
+
+  private ScopedWebDriverPool factory;
+  private DesiredCapabilities fakeCapabilities;
+
+  @BeforeEach
+  public void setUp() {
+    fakeCapabilities = new DesiredCapabilities();
+    fakeCapabilities.setBrowserName("FAKE");
+
+    factory = new ScopedWebDriverPool();
+
+    factory.setLocalDriverProvider(FakeWebDriver::new);
+  }
+
+  private boolean isActive(WebDriver driver) {
+    return ((FakeWebDriver) driver).isActive();
+  }
+
+  @Test
+  public void testCanInstantiateAndDismissADriver() {
+    ScopedWebDriverPool.Scope scope = factory.openScope();
+    WebDriver driver = scope.getDriver(fakeCapabilities);
+    assertTrue(isActive(driver));
+    assertFalse(factory.isEmpty());
+
+    factory.dismissDriver(driver);
+    assertFalse(isActive(driver));
+    assertTrue(factory.isEmpty());
+  }
+
+  @Test
+  public void testClosingTheScopeDismissesTheDriver() {
+    WebDriver driver;
+    try (ScopedWebDriverPool.Scope scope = factory.openScope()) {
+      driver = scope.getDriver(fakeCapabilities);
+    }
+    assertFalse(isActive(driver));
+    assertTrue(factory.isEmpty());
+  }
+
+  @Test
+  public void testTheDriverIsSharedByThreadsOfTheScope() throws Exception {
+    ScopedWebDriverPool.Scope scope = factory.openScope();
+    WebDriver driver = scope.call(() -> factory.getDriver(fakeCapabilities));
+
+    WebDriver driver2 = CompletableFuture.supplyAsync(() -> scope.call(() -> factory.getDriver(fakeCapabilities)))
+      .get(5, TimeUnit.SECONDS);
+    assertSame(driver, driver2);
+  }
+
+  @Test
+  public void testScopesHaveSeparateDrivers() {
+    WebDriver driver = factory.openScope().getDriver(fakeCapabilities);
+    WebDriver driver2 = factory.openScope().getDriver(fakeCapabilities);
+    assertNotSame(driver, driver2);
+
+    factory.dismissAll();
+    assertFalse(isActive(driver));
+    assertFalse(isActive(driver2));
+    assertTrue(factory.isEmpty());
+  }
+
+  @Test
+  public void testShouldRecreateADriverWithDifferentCapabilities() {
+    ScopedWebDriverPool.Scope scope = factory.openScope();
+    WebDriver driver = scope.getDriver(fakeCapabilities);
+
+    fakeCapabilities.setCapability("foo", "bar");
+    WebDriver driver2 = scope.getDriver(fakeCapabilities);
+    assertNotSame(driver, driver2);
+    assertFalse(isActive(driver));
+    assertTrue(isActive(driver2));
+  }
+
+  @Test
+  public void testRequiresABoundScope() {
+    assertThrows(IllegalStateException.class, () -> factory.getDriver(fakeCapabilities));
+  }
+
+  @Test
+  public void testClosedScopeCannotBeUsed() {
+    ScopedWebDriverPool.Scope scope = factory.openScope();
+    scope.close();
+    assertThrows(IllegalStateException.class, () -> scope.getDriver(fakeCapabilities));
+  }
+}
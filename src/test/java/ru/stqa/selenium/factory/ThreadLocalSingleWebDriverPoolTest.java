@@ -23,8 +23,18 @@ import org.openqa.selenium.WebDriver;
 import org.openqa.selenium.WebDriverException;
 import org.openqa.selenium.remote.DesiredCapabilities;
 
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -47,6 +57,14 @@ public class ThreadLocalSingleWebDriverPoolTest {
     return ((FakeWebDriver) driver).isActive();
   }
 
+  private static void awaitUninterruptibly(CountDownLatch latch) {
+    try {
+      latch.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
   @Test
   public void testCanInstantiateAndDismissADriver() {
     WebDriver driver = factory.getDriver(fakeCapabilities);
@@ -134,11 +152,15 @@ public class ThreadLocalSingleWebDriverPoolTest {
 
   @Test
   public void testShouldAutoDismissTheDriverIfAThreadIsOver() throws InterruptedException {
+    ((ThreadLocalSingleWebDriverPool) factory).setFinishedThreadsCheckInterval(Duration.ZERO);
     final WebDriver driver = factory.getDriver(fakeCapabilities);
 
+    CountDownLatch driverDismissed = new CountDownLatch(1);
     Thread t = new Thread(() -> {
       WebDriver driver2 = factory.getDriver(fakeCapabilities);
       assertNotSame(driver2, driver);
+      // the thread should be alive when the main thread calls the pool
+      awaitUninterruptibly(driverDismissed);
     });
     t.start();
 
@@ -148,6 +170,7 @@ public class ThreadLocalSingleWebDriverPoolTest {
     factory.dismissDriver(driver);
     assertFalse(isActive(driver));
 
+    driverDismissed.countDown();
     t.join();
     // the thread is over, but the driver is not auto dismissed yet
     assertFalse(factory.isEmpty());
@@ -158,6 +181,27 @@ public class ThreadLocalSingleWebDriverPoolTest {
     assertTrue(factory.isEmpty());
   }
 
+  @Test
+  public void testChecksForFinishedThreadsNotMoreOftenThanTheInterval() throws InterruptedException {
+    ThreadLocalSingleWebDriverPool pool = (ThreadLocalSingleWebDriverPool) factory;
+    pool.setFinishedThreadsCheckInterval(Duration.ofHours(1));
+    WebDriver driver = factory.getDriver(fakeCapabilities);
+
+    Thread t = new Thread(() -> factory.getDriver(fakeCapabilities));
+    t.start();
+    t.join();
+
+    factory.dismissDriver(driver);
+    // the thread is over, but it is too early to scan the drivers
+    assertFalse(factory.isEmpty());
+
+    // a new interval starts right away
+    pool.setFinishedThreadsCheckInterval(Duration.ZERO);
+    WebDriver driver2 = factory.getDriver(fakeCapabilities);
+    factory.dismissDriver(driver2);
+    assertTrue(factory.isEmpty());
+  }
+
   @Test
   public void testShouldNotDismissADriverFromAnotherThread() throws InterruptedException {
     final WebDriver driver = factory.getDriver(fakeCapabilities);
@@ -174,13 +218,15 @@ public class ThreadLocalSingleWebDriverPoolTest {
   }
 
   @Test
-  public void testDismissAllCanDismissDriversFromAllThreads() {
+  public void testDismissAllCanDismissDriversFromAllThreads() throws InterruptedException {
     final WebDriver driver = factory.getDriver(fakeCapabilities);
 
-    new Thread(() -> {
+    Thread t = new Thread(() -> {
       WebDriver driver2 = factory.getDriver(fakeCapabilities);
       assertNotSame(driver2, driver);
-    }).start();
+    });
+    t.start();
+    t.join();
 
     factory.dismissAll();
     assertFalse(isActive(driver));
@@ -214,6 +260,49 @@ public class ThreadLocalSingleWebDriverPoolTest {
     assertEquals(threads.size(), drivers.size());
   }
 
+  @Test
+  public void testDriversAreCreatedInParallelThreads() throws InterruptedException {
+    // each creation waits for all the others, so it succeeds only if they overlap
+    CyclicBarrier allCreating = new CyclicBarrier(8);
+    factory.setLocalDriverProvider(capabilities -> {
+      awaitAll(allCreating);
+      return new FakeWebDriver(capabilities);
+    });
+
+    List<Thread> threads = new ArrayList<>();
+    List<WebDriver> drivers = Collections.synchronizedList(new ArrayList<>());
+    for (int d = 0; d < 8; d++) {
+      threads.add(new Thread(() -> drivers.add(factory.getDriver(fakeCapabilities))));
+    }
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertEquals(threads.size(), drivers.size());
+  }
+
+  @Test
+  public void testAsynchronousDriverIsBoundToTheRequestingThread() throws Exception {
+    WebDriver driver = factory.getDriverAsync(fakeCapabilities).get(5, TimeUnit.SECONDS);
+    assertTrue(isActive(driver));
+
+    WebDriver driver2 = factory.getDriver(fakeCapabilities);
+    assertSame(driver2, driver);
+
+    factory.dismissDriver(driver);
+    assertTrue(factory.isEmpty());
+  }
+
+  private static void awaitAll(CyclicBarrier barrier) {
+    try {
+      barrier.await(5, TimeUnit.SECONDS);
+    } catch (InterruptedException | BrokenBarrierException | TimeoutException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
   private static class BrokenFakeWebDriver extends FakeWebDriver {
     public BrokenFakeWebDriver(Capabilities capabilities) {
       super(capabilities);
@@ -236,4 +325,228 @@ public class ThreadLocalSingleWebDriverPoolTest {
     assertNotSame(driver2, driver);
   }
 
+  @Test
+  public void testDismissAllQuitsDriversInParallelInBackground() throws InterruptedException {
+    // each quit waits for all the others, so it succeeds only if they overlap
+    CyclicBarrier allQuitting = new CyclicBarrier(8);
+    factory.setLocalDriverProvider(capabilities -> new FakeWebDriver(capabilities) {
+      @Override
+      public void quit() {
+        awaitAll(allQuitting);
+        super.quit();
+      }
+    });
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    factory.setQuitExecutor(executor);
+    try {
+      List<Thread> threads = new ArrayList<>();
+      List<WebDriver> drivers = Collections.synchronizedList(new ArrayList<>());
+      for (int d = 0; d < 8; d++) {
+        threads.add(new Thread(() -> drivers.add(factory.getDriver(fakeCapabilities))));
+      }
+      for (Thread thread : threads) {
+        thread.start();
+        thread.join();
+      }
+
+      factory.dismissAll();
+      assertTrue(factory.isEmpty());
+      assertTrue(factory.awaitTermination(Duration.ofSeconds(10)));
+      for (WebDriver driver : drivers) {
+        assertFalse(isActive(driver));
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void testHealthCheckEvictsDeadIdleDriversInBackground() throws InterruptedException {
+    ThreadLocalSingleWebDriverPool pool = (ThreadLocalSingleWebDriverPool) factory;
+    pool.setMaxParkedDrivers(1);
+    factory.setDriverResetter(driver -> {});
+    DesiredCapabilities otherCapabilities = new DesiredCapabilities(fakeCapabilities);
+    otherCapabilities.setCapability("foo", "bar");
+    factory.setHealthCheckInterval(Duration.ofMillis(50));
+    try {
+      Thread thread = new Thread(() -> {
+        // the first driver is parked, and the browser dies while it is idle
+        factory.getDriver(fakeCapabilities).quit();
+        factory.dismissDriver(factory.getDriver(otherCapabilities));
+      });
+      thread.start();
+      thread.join();
+
+      long deadline = System.currentTimeMillis() + 5000;
+      while (!factory.isEmpty()) {
+        assertTrue(System.currentTimeMillis() < deadline, "The dead driver was not evicted in time");
+        Thread.sleep(10);
+      }
+    } finally {
+      factory.setHealthCheckInterval(null);
+    }
+  }
+
+  @Test
+  public void testHealthCheckDoesNotTouchDriversInUse() throws InterruptedException {
+    factory.setHealthCheckInterval(Duration.ofMillis(50));
+    try {
+      WebDriver driver = factory.getDriver(fakeCapabilities);
+      driver.quit();
+      Thread.sleep(300);
+      assertFalse(factory.isEmpty());
+
+      // the dead driver is replaced on reuse
+      assertNotSame(driver, factory.getDriver(fakeCapabilities));
+    } finally {
+      factory.setHealthCheckInterval(null);
+    }
+  }
+
+
+  @Test
+  public void testRetiresADriverAfterMaxUsesAndReplacesItInBackground() {
+    factory.setRecyclingPolicy(new RecyclingPolicy(2, null));
+
+    WebDriver driver = factory.getDriver(fakeCapabilities);
+    assertSame(driver, factory.getDriver(fakeCapabilities));
+    // this is the last use, the replacement is being launched
+    assertSame(driver, factory.getDriver(fakeCapabilities));
+
+    WebDriver driver2 = factory.getDriver(fakeCapabilities);
+    assertNotSame(driver, driver2);
+    assertTrue(isActive(driver2));
+    assertFalse(isActive(driver));
+  }
+
+  @Test
+  public void testRetiresAnExhaustedDriver() {
+    factory.setRecyclingPolicy(new RecyclingPolicy(Integer.MAX_VALUE, null, driver -> true));
+
+    WebDriver driver = factory.getDriver(fakeCapabilities);
+    assertSame(driver, factory.getDriver(fakeCapabilities));
+    assertNotSame(driver, factory.getDriver(fakeCapabilities));
+  }
+
+  @Test
+  public void testDoesNotCallEqualsAndHashCodeOfDrivers() {
+    factory.setLocalDriverProvider(capabilities -> new FakeWebDriver(capabilities) {
+      @Override
+      public boolean equals(Object o) {
+        throw new UnsupportedOperationException("equals");
+      }
+
+      @Override
+      public int hashCode() {
+        throw new UnsupportedOperationException("hashCode");
+      }
+    });
+    factory.setRecyclingPolicy(new RecyclingPolicy(2, null));
+
+    WebDriver driver = factory.getDriver(fakeCapabilities);
+    assertSame(driver, factory.getDriver(fakeCapabilities));
+    // this is the last use, the replacement is being launched
+    assertSame(driver, factory.getDriver(fakeCapabilities));
+    WebDriver driver2 = factory.getDriver(fakeCapabilities);
+    assertNotSame(driver, driver2);
+    factory.dismissDriver(driver2);
+    assertTrue(factory.isEmpty());
+
+    WebDriver driver3 = factory.getDriver(fakeCapabilities);
+    factory.dismissAll();
+    assertFalse(isActive(driver3));
+    assertTrue(factory.isEmpty());
+  }
+
+  @Test
+  public void testHandsOffADriverToAThreadThatRequestsTheSameCapabilities() throws InterruptedException {
+    ThreadLocalSingleWebDriverPool pool = (ThreadLocalSingleWebDriverPool) factory;
+    pool.setMaxParkedDrivers(2);
+    List<WebDriver> reset = Collections.synchronizedList(new ArrayList<>());
+    factory.setDriverResetter(reset::add);
+    DesiredCapabilities otherCapabilities = new DesiredCapabilities(fakeCapabilities);
+    otherCapabilities.setCapability("foo", "bar");
+
+    List<WebDriver> drivers = Collections.synchronizedList(new ArrayList<>());
+    Thread thread = new Thread(() -> {
+      drivers.add(factory.getDriver(fakeCapabilities));
+      // the first driver is parked instead of being quit
+      drivers.add(factory.getDriver(otherCapabilities));
+    });
+    thread.start();
+    thread.join();
+
+    WebDriver driver = factory.getDriver(fakeCapabilities);
+    assertSame(drivers.get(0), driver);
+    assertTrue(isActive(driver));
+    assertTrue(isActive(drivers.get(1)));
+    // the driver was reset before it was parked
+    assertEquals(Collections.singletonList(driver), reset);
+  }
+
+  @Test
+  public void testQuitsADriverThatFailedToResetInsteadOfParkingIt() throws InterruptedException {
+    ThreadLocalSingleWebDriverPool pool = (ThreadLocalSingleWebDriverPool) factory;
+    pool.setMaxParkedDrivers(1);
+    factory.setDriverResetter(driver -> {
+      throw new WebDriverException("Cannot reset");
+    });
+    DesiredCapabilities otherCapabilities = new DesiredCapabilities(fakeCapabilities);
+    otherCapabilities.setCapability("foo", "bar");
+
+    List<WebDriver> drivers = Collections.synchronizedList(new ArrayList<>());
+    Thread thread = new Thread(() -> {
+      drivers.add(factory.getDriver(fakeCapabilities));
+      drivers.add(factory.getDriver(otherCapabilities));
+    });
+    thread.start();
+    thread.join();
+
+    assertFalse(isActive(drivers.get(0)));
+    assertNotSame(drivers.get(0), factory.getDriver(fakeCapabilities));
+  }
+
+  @Test
+  public void testParksTheDriverOfAFinishedThread() throws InterruptedException {
+    ThreadLocalSingleWebDriverPool pool = (ThreadLocalSingleWebDriverPool) factory;
+    pool.setMaxParkedDrivers(1);
+    factory.setDriverResetter(driver -> {});
+    pool.setFinishedThreadsCheckInterval(Duration.ZERO);
+
+    List<WebDriver> drivers = Collections.synchronizedList(new ArrayList<>());
+    Thread thread = new Thread(() -> drivers.add(factory.getDriver(fakeCapabilities)));
+    thread.start();
+    thread.join();
+
+    WebDriver driver = factory.getDriver(fakeCapabilities);
+    assertSame(drivers.get(0), driver);
+
+    factory.dismissAll();
+    assertFalse(isActive(driver));
+    assertTrue(factory.isEmpty());
+  }
+
+  @Test
+  public void testQuitsTheLeastRecentlyParkedDriverIfThereAreTooMany() throws InterruptedException {
+    ThreadLocalSingleWebDriverPool pool = (ThreadLocalSingleWebDriverPool) factory;
+    pool.setMaxParkedDrivers(1);
+    factory.setDriverResetter(driver -> {});
+    pool.setFinishedThreadsCheckInterval(Duration.ZERO);
+    DesiredCapabilities otherCapabilities = new DesiredCapabilities(fakeCapabilities);
+    otherCapabilities.setCapability("foo", "bar");
+
+    List<WebDriver> drivers = Collections.synchronizedList(new ArrayList<>());
+    Thread thread = new Thread(() -> {
+      drivers.add(factory.getDriver(fakeCapabilities));
+      drivers.add(factory.getDriver(otherCapabilities));
+    });
+    thread.start();
+    thread.join();
+    // the next call parks the driver of the finished thread, there is no room for two
+    WebDriver driver = factory.getDriver(otherCapabilities);
+
+    assertFalse(isActive(drivers.get(0)));
+    assertSame(drivers.get(1), driver);
+  }
+
 }
@@ -0,0 +1,198 @@
+/*
+ * Copyright 2020 Alexei Barantsev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ru.stqa.selenium.factory;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.remote.DesiredCapabilities;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WarmStandbyWebDriverPoolTest {
+
+  private WarmStandbyWebDriverPool factory;
+  private DesiredCapabilities fakeCapabilities;
+  private AtomicInteger launched;
+
+  @BeforeEach
+  public void setUp() {
+    fakeCapabilities = new DesiredCapabilities();
+    fakeCapabilities.setBrowserName("FAKE");
+
+    launched = new AtomicInteger();
+    factory = new WarmStandbyWebDriverPool();
+    factory.setLocalDriverProvider(capabilities -> {
+      launched.incrementAndGet();
+      return new FakeWebDriver(capabilities);
+    });
+  }
+
+  private boolean isActive(WebDriver driver) {
+    return ((FakeWebDriver) driver).isActive();
+  }
+
+  private void waitFor(BooleanSupplier condition) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 5000;
+    while (!condition.getAsBoolean()) {
+      assertTrue(System.currentTimeMillis() < deadline, "Condition was not met in time");
+      Thread.sleep(10);
+    }
+  }
+
+  @Test
+  public void testCanInstantiateAndDismissADriver() {
+    WebDriver driver = factory.getDriver(fakeCapabilities);
+    assertTrue(isActive(driver));
+    assertFalse(factory.isEmpty());
+
+    factory.dismissDriver(driver);
+    assertFalse(isActive(driver));
+  }
+
+  @Test
+  public void testLaunchesAStandbyDriverInBackground() throws InterruptedException {
+    WebDriver driver = factory.getDriver(fakeCapabilities);
+    waitFor(() -> factory.countIdle(null, fakeCapabilities) == 1);
+
+    WebDriver driver2 = factory.getDriver(fakeCapabilities);
+    assertNotSame(driver2, driver);
+    assertTrue(isActive(driver2));
+    assertTrue(isActive(driver));
+  }
+
+  @Test
+  public void testCanPrewarmDrivers() throws InterruptedException {
+    factory.setLimits(fakeCapabilities, new WarmStandbyWebDriverPool.Limits(3, 3, 10));
+    factory.prewarm(fakeCapabilities);
+    waitFor(() -> factory.countIdle(null, fakeCapabilities) == 3);
+    assertEquals(3, launched.get());
+
+    WebDriver driver = factory.getDriver(fakeCapabilities);
+    assertTrue(isActive(driver));
+    waitFor(() -> launched.get() == 4);
+  }
+
+  @Test
+  public void testLaunchesInTheCreationExecutorAndCountsFailures() throws InterruptedException {
+    AtomicInteger executed = new AtomicInteger();
+    factory.setCreationExecutor(task -> {
+      executed.incrementAndGet();
+      new Thread(task).start();
+    });
+    InMemoryPoolMetrics metrics = new InMemoryPoolMetrics();
+    factory.setPoolMetrics(metrics);
+    factory.setLocalDriverProvider(capabilities -> {
+      if (launched.incrementAndGet() == 1) {
+        throw new WebDriverException("Cannot start a browser");
+      }
+      return new FakeWebDriver(capabilities);
+    });
+
+    factory.prewarm(fakeCapabilities);
+    waitFor(() -> metrics.getFailedCreations() == 1);
+
+    // the failed launch gives its place in the limits back
+    waitFor(() -> {
+      factory.prewarm(fakeCapabilities);
+      return factory.countIdle(null, fakeCapabilities) == 1;
+    });
+    assertEquals(2, executed.get());
+  }
+
+  @Test
+  public void testDoesNotLaunchMoreThanMaxTotal() throws InterruptedException {
+    factory.setDefaultLimits(new WarmStandbyWebDriverPool.Limits(2, 2, 2));
+    WebDriver driver = factory.getDriver(fakeCapabilities);
+    waitFor(() -> factory.countIdle(null, fakeCapabilities) == 1);
+    Thread.sleep(100);
+    assertEquals(2, launched.get());
+
+    factory.dismissDriver(driver);
+    waitFor(() -> factory.countIdle(null, fakeCapabilities) == 2);
+  }
+
+  @Test
+  public void testShouldReplaceAnInactiveStandbyDriver() throws InterruptedException {
+    factory.prewarm(fakeCapabilities);
+    waitFor(() -> factory.countIdle(null, fakeCapabilities) == 1);
+    factory.dismissAll();
+    assertTrue(factory.isEmpty());
+
+    factory.setDriverAlivenessChecker(driver -> false);
+    factory.prewarm(fakeCapabilities);
+    waitFor(() -> factory.countIdle(null, fakeCapabilities) == 1);
+    WebDriver driver = factory.getDriver(fakeCapabilities);
+    assertTrue(isActive(driver));
+    assertTrue(launched.get() >= 3);
+  }
+
+  @Test
+  public void testCanDismissAllDrivers() throws InterruptedException {
+    WebDriver driver = factory.getDriver(fakeCapabilities);
+    waitFor(() -> factory.countIdle(null, fakeCapabilities) == 1);
+
+    factory.dismissAll();
+    assertFalse(isActive(driver));
+    assertTrue(factory.isEmpty());
+  }
+
+  @Test
+  public void testShouldDismissOwnedDriversOnly() {
+    WebDriver driver = factory.getDriver(fakeCapabilities);
+    assertTrue(isActive(driver));
+
+    WebDriver driver2 = new FakeWebDriver(fakeCapabilities);
+    assertThrows(Error.class, () -> factory.dismissDriver(driver2));
+  }
+
+  @Test
+  public void testRejectsInconsistentLimits() {
+    assertThrows(IllegalArgumentException.class, () -> new WarmStandbyWebDriverPool.Limits(2, 1, 5));
+  }
+
+  @Test
+  public void testHealthCheckReplacesDeadIdleDrivers() throws InterruptedException {
+    List<WebDriver> created = new CopyOnWriteArrayList<>();
+    factory.setLocalDriverProvider(capabilities -> {
+      WebDriver driver = new FakeWebDriver(capabilities);
+      created.add(driver);
+      return driver;
+    });
+    factory.prewarm(fakeCapabilities);
+    waitFor(() -> factory.countIdle(null, fakeCapabilities) == 1);
+    WebDriver idle = created.get(0);
+    idle.quit();
+
+    factory.setHealthCheckInterval(Duration.ofMillis(50));
+    try {
+      waitFor(() -> created.size() == 2 && factory.countIdle(null, fakeCapabilities) == 1);
+      WebDriver driver = factory.getDriver(fakeCapabilities);
+      assertNotSame(idle, driver);
+      assertTrue(isActive(driver));
+    } finally {
+      factory.setHealthCheckInterval(null);
+    }
+  }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2020 Alexei Barantsev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ru.stqa.selenium.factory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.remote.DesiredCapabilities;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the overhead of the pools themselves, drivers are {@link FakeWebDriver} instances
+ * that are created and quit instantly.
+ *
+ * {@link ThreadLocalSingleWebDriverPool} and {@link LooseWebDriverPool} are shared by all the benchmark threads,
+ * they are thread-safe. {@link SingleWebDriverPool} is not, each thread gets its own pool.
+ *
+ * Run with {@code mvn -Pbenchmarks verify}, the thread counts from 1 to 64 are run one after another.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WebDriverPoolBenchmark {
+
+  public enum PoolType {
+    SINGLE, THREAD_LOCAL, LOOSE;
+
+    WebDriverPool newPool() {
+      switch (this) {
+        case SINGLE: return new SingleWebDriverPool();
+        case THREAD_LOCAL: return new ThreadLocalSingleWebDriverPool();
+        default: return new LooseWebDriverPool();
+      }
+    }
+  }
+
+  @Param
+  private PoolType poolType;
+
+  private DesiredCapabilities capabilities;
+
+  private final List<WebDriverPool> pools = new CopyOnWriteArrayList<>();
+  private WebDriverPool sharedPool;
+  private ThreadLocal<WebDriverPool> threadPool;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    capabilities = new DesiredCapabilities();
+    capabilities.setBrowserName("FAKE");
+    if (poolType != PoolType.SINGLE) {
+      sharedPool = newPool();
+    } else {
+      threadPool = ThreadLocal.withInitial(this::newPool);
+    }
+  }
+
+  private WebDriverPool newPool() {
+    WebDriverPool pool = poolType.newPool();
+    pool.setLocalDriverProvider(FakeWebDriver::new);
+    pools.add(pool);
+    return pool;
+  }
+
+  private WebDriverPool pool() {
+    return sharedPool != null ? sharedPool : threadPool.get();
+  }
+
+  @TearDown(Level.Iteration)
+  public void dismissAllDrivers() {
+    // LooseWebDriverPool accumulates a new driver on each getDriver call
+    for (WebDriverPool pool : pools) {
+      pool.dismissAll();
+    }
+  }
+
+  /**
+   * Reuses the driver for the single pools, creates a new one for the loose pool.
+   */
+  @Benchmark
+  public WebDriver getDriver() {
+    return pool().getDriver(capabilities);
+  }
+
+  @Benchmark
+  public void getAndDismissDriver() {
+    WebDriverPool pool = pool();
+    pool.dismissDriver(pool.getDriver(capabilities));
+  }
+
+  @Benchmark
+  public void getDriverAndDismissAll() {
+    WebDriverPool pool = pool();
+    pool.getDriver(capabilities);
+    pool.dismissAll();
+  }
+
+  @Benchmark
+  public boolean isEmpty() {
+    return pool().isEmpty();
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    for (int threads = 1; threads <= 64; threads *= 2) {
+      new Runner(new OptionsBuilder()
+        .include(WebDriverPoolBenchmark.class.getSimpleName())
+        .threads(threads)
+        .build()).run();
+    }
+  }
+}